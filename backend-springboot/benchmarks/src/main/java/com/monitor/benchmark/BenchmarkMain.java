@@ -0,0 +1,28 @@
+package com.monitor.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 参数与 JMH 命令行一致（例如 -f 1 -wi 3 -i 5 ErrorHash），并始终附加 gc 分析器，
+ * 每个用例都会输出 gc.alloc.rate / gc.alloc.rate.norm（每次操作分配的字节数）；
+ * 未指定 -foe 时默认为 -foe true
+ */
+public class BenchmarkMain {
+    
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class);
+        // 未指定 -foe 时默认出错即失败，草图精度校验不通过时进程以非 0 退出
+        if (!commandLine.shouldFailOnError().hasValue()) {
+            options.shouldFailOnError(true);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.monitor.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上报请求体解析为 Map
+ * post：@RequestBody 路径（共享 ObjectMapper 读取字节）
+ * getNewMapper：当前 handleReport 的 GET 路径（URL 解码后每次新建 ObjectMapper）
+ * getSharedMapper：GET 路径改用共享 ObjectMapper 的对照
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportParsingBenchmark {
+    
+    private static final String ERROR_BODY = "{\"type\":\"js\",\"message\":\"Uncaught TypeError: Cannot read properties of undefined (reading 'id')\","
+        + "\"stack\":\"TypeError: Cannot read properties of undefined (reading 'id')\\n    at render (https://example.com/static/js/main.4f2a.js:1:20345)\\n"
+        + "    at commitRoot (https://example.com/static/js/vendor.91c3.js:2:118842)\","
+        + "\"url\":\"https://example.com/orders/1024?tab=detail\",\"line\":1,\"col\":20345,"
+        + "\"userAgent\":\"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\","
+        + "\"userId\":\"u-20931\",\"sessionId\":\"s-7f1c2d9e\",\"timestamp\":1700000000000}";
+    
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private byte[] postBody;
+    private String getQuery;
+    
+    @Setup
+    public void setup() {
+        postBody = ERROR_BODY.getBytes(StandardCharsets.UTF_8);
+        getQuery = URLEncoder.encode(ERROR_BODY, StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> post() throws Exception {
+        return sharedMapper.readValue(postBody, Map.class);
+    }
+    
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getNewMapper() throws Exception {
+        String decoded = URLDecoder.decode(getQuery, StandardCharsets.UTF_8);
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.readValue(decoded, Map.class);
+    }
+    
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getSharedMapper() throws Exception {
+        String decoded = URLDecoder.decode(getQuery, StandardCharsets.UTF_8);
+        return sharedMapper.readValue(decoded, Map.class);
+    }
+}
@@ -0,0 +1,65 @@
+package com.monitor.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheService 的值序列化：与 RedisConfig 相同的 GenericJackson2JsonRedisSerializer，
+ * 负载为统计缓存条目（{version, computedAt, data}）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheSerializationBenchmark {
+    
+    private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+    private Map<String, Object> envelope;
+    private byte[] serialized;
+    
+    @Setup
+    public void setup() {
+        Map<String, Object> typeStats = new HashMap<>();
+        typeStats.put("js", 1203L);
+        typeStats.put("promise", 341L);
+        typeStats.put("resource", 88L);
+        
+        List<Map<String, Object>> timeStats = new ArrayList<>();
+        for (int i = 0; i < 168; i++) {
+            Map<String, Object> point = new HashMap<>();
+            point.put("time", String.format("2026-10-%02d %02d:00", 10 + i / 24, i % 24));
+            point.put("count", (long) (i * 7 % 53));
+            timeStats.add(point);
+        }
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", 1632L);
+        data.put("typeStats", typeStats);
+        data.put("timeStats", timeStats);
+        
+        envelope = new HashMap<>();
+        envelope.put("version", 42L);
+        envelope.put("computedAt", 1700000000000L);
+        envelope.put("data", data);
+        
+        serialized = serializer.serialize(envelope);
+    }
+    
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(envelope);
+    }
+    
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+}
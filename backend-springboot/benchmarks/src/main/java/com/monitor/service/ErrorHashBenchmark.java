@@ -0,0 +1,41 @@
+package com.monitor.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ErrorService.generateErrorHash：每条错误上报都要计算一次的指纹
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorHashBenchmark {
+    
+    private String message;
+    private String stack;
+    private String url;
+    
+    @Setup
+    public void setup() {
+        message = "Uncaught TypeError: Cannot read properties of undefined (reading 'id')";
+        stack = "TypeError: Cannot read properties of undefined (reading 'id')\n"
+            + "    at render (https://example.com/static/js/main.4f2a.js:1:20345)\n"
+            + "    at commitRoot (https://example.com/static/js/vendor.91c3.js:2:118842)\n"
+            + "    at performSyncWorkOnRoot (https://example.com/static/js/vendor.91c3.js:2:113571)";
+        url = "https://example.com/orders/1024?tab=detail";
+    }
+    
+    @Benchmark
+    public String generateErrorHash() {
+        return ErrorService.generateErrorHash(message, stack, url);
+    }
+    
+    @Benchmark
+    public String generateErrorHashWithoutStack() {
+        return ErrorService.generateErrorHash(message, null, url);
+    }
+}
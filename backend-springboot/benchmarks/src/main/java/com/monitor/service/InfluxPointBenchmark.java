@@ -0,0 +1,52 @@
+package com.monitor.service;
+
+import com.influxdb.client.write.Point;
+import com.monitor.config.InfluxDBConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InfluxDB 数据点构建：InfluxDBService.performancePoint（含标签基数控制和 URL 归一化），
+ * 以及写入器最终执行的行协议序列化
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InfluxPointBenchmark {
+    
+    private static final String[] URLS = {
+        "https://example.com/",
+        "https://example.com/orders/1024?tab=detail",
+        "https://example.com/orders/2048",
+        "https://example.com/users/7f1c2d9e-4b7a-4c1e-9a57-2f0d1e3c4b5a/profile",
+        "https://example.com/search?q=monitor&page=3"
+    };
+    
+    private InfluxDBService influxDBService;
+    private int next;
+    
+    @Setup
+    public void setup() {
+        InfluxDBConfig config = new InfluxDBConfig();
+        // 只构建数据点，不连接 InfluxDB；没有 Redis 时标签取值按本地上限登记
+        influxDBService = new InfluxDBService(null, null, config, new TagCardinalityGovernor(config, null), null, null);
+    }
+    
+    @Benchmark
+    public Point performancePoint() {
+        String url = URLS[next++ % URLS.length];
+        return influxDBService.performancePoint("001", url, "u-20931", "s-7f1c2d9e",
+            1830L, 920L, 640L, 1210L, 12L, 0.031, 18L, 24L, 160L);
+    }
+    
+    @Benchmark
+    public String performanceLineProtocol() {
+        String url = URLS[next++ % URLS.length];
+        return influxDBService.performancePoint("001", url, "u-20931", "s-7f1c2d9e",
+            1830L, 920L, 640L, 1210L, 12L, 0.031, 18L, 24L, 160L).toLineProtocol();
+    }
+}
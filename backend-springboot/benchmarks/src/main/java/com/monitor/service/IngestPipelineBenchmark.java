@@ -0,0 +1,125 @@
+package com.monitor.service;
+
+import com.monitor.config.IngestConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * IngestPipeline 过载时的上报吞吐：8 个请求线程持续上报，存储写入（每条 storageMicros 微秒）跟不上，缓冲区很快写满
+ * 请求线程按控制器的逻辑处理：进入缓冲区返回 202；否则 reject 返回 503，sync 在请求线程中同步写入存储。
+ * reject 模式在试验结束时校验：缓冲区确实写满过，且没有任何请求在请求线程中写入存储，否则基准测试失败
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class IngestPipelineBenchmark {
+    
+    private static final Map<String, Object> BODY = Map.of(
+        "url", "https://example.com/orders/1024",
+        "loadTime", 1830,
+        "fcp", 640
+    );
+    
+    @Param({"reject", "sync"})
+    public String overflow;
+    
+    /**
+     * 模拟一条事件写入各存储的耗时（微秒）
+     */
+    @Param({"200"})
+    public long storageMicros;
+    
+    private ReportService reportService;
+    private IngestPipeline pipeline;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder syncWrites = new LongAdder();
+    
+    /**
+     * 每秒的请求结果：进入缓冲区 / 503 拒绝 / 请求线程同步写入
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Responses {
+        public long queued;
+        public long rejected;
+        public long syncWritten;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            queued = 0;
+            rejected = 0;
+            syncWritten = 0;
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        IngestConfig config = new IngestConfig();
+        config.setRingSize(1024);
+        config.setConsumers(1);
+        config.setOverflow(overflow);
+        config.setShutdownTimeout(10000);
+        reportService = new SlowReportService(storageMicros);
+        pipeline = new IngestPipeline(config, reportService);
+        pipeline.init();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.shutdown();
+        if ("reject".equals(overflow)) {
+            if (rejected.sum() == 0) {
+                throw new IllegalStateException("ring buffer never filled up, reject path was not exercised");
+            }
+            if (syncWrites.sum() > 0) {
+                throw new IllegalStateException(syncWrites.sum() + " requests wrote to storage on the request thread in reject mode");
+            }
+        }
+        System.out.println("Ingest overflow (" + overflow + "): rejected=" + rejected.sum() + ", syncWrites=" + syncWrites.sum()
+            + ", " + pipeline.getMetrics());
+    }
+    
+    /**
+     * 与上报控制器相同的处理顺序
+     */
+    @Benchmark
+    public void report(Responses responses) {
+        if (pipeline.publish("001", ReportService.CATEGORY_PERFORMANCE, BODY)) {
+            responses.queued++;
+        } else if (pipeline.rejectsOverflow()) {
+            responses.rejected++;
+            rejected.increment();
+        } else {
+            reportService.dispatch("001", ReportService.CATEGORY_PERFORMANCE, BODY);
+            responses.syncWritten++;
+            syncWrites.increment();
+        }
+    }
+    
+    /**
+     * 以固定耗时模拟存储写入，不连接任何数据库
+     */
+    private static class SlowReportService extends ReportService {
+        
+        private final long storageNanos;
+        
+        SlowReportService(long storageMicros) {
+            super(null, null, null, null, null);
+            this.storageNanos = TimeUnit.MICROSECONDS.toNanos(storageMicros);
+        }
+        
+        @Override
+        public Map<String, Object> dispatch(String projectId, String category, Map<String, Object> body) {
+            LockSupport.parkNanos(storageNanos);
+            return Map.of("success", true);
+        }
+    }
+}
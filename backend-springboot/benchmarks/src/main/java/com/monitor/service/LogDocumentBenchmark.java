@@ -0,0 +1,62 @@
+package com.monitor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * writeLog 的日志文档构建（ElasticsearchService.buildDocument），
+ * 以及批量写入时的 JSON 序列化；负载为带请求 / 响应数据的接口监控日志
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogDocumentBenchmark {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Map<String, Object> data;
+    
+    @Setup
+    public void setup() {
+        Map<String, Object> requestData = new HashMap<>();
+        requestData.put("page", 3);
+        requestData.put("pageSize", 20);
+        requestData.put("keyword", "monitor");
+        
+        Map<String, Object> responseData = new HashMap<>();
+        responseData.put("code", 500);
+        responseData.put("message", "Internal Server Error");
+        responseData.put("traceId", "9f2c1e7a4b5d6c8e");
+        
+        data = new HashMap<>();
+        data.put("projectId", "001");
+        data.put("type", "api");
+        data.put("userId", "u-20931");
+        data.put("sessionId", "s-7f1c2d9e");
+        data.put("url", "https://example.com/api/orders?page=3");
+        data.put("method", "GET");
+        data.put("status", 500);
+        data.put("responseTime", 842);
+        data.put("timestamp", 1700000000000L);
+        data.put("userAgent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36");
+        data.put("requestData", requestData);
+        data.put("responseData", responseData);
+    }
+    
+    @Benchmark
+    public Map<String, Object> buildDocument() {
+        return ElasticsearchService.buildDocument(data, Instant.now());
+    }
+    
+    @Benchmark
+    public byte[] buildAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(ElasticsearchService.buildDocument(data, Instant.now()));
+    }
+}
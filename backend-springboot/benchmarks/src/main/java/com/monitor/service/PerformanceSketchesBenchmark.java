@@ -0,0 +1,62 @@
+package com.monitor.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PerformanceSketches.record：每条性能上报对每个指标调用一次，
+ * 包括页面归一化、滚动窗口查找和两个草图（项目整体 + 页面）的更新
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PerformanceSketchesBenchmark {
+    
+    private static final String[] URLS = {
+        "https://example.com/",
+        "https://example.com/orders/1024?tab=detail",
+        "https://example.com/orders/2048",
+        "https://example.com/users/7f1c2d9e-4b7a-4c1e-9a57-2f0d1e3c4b5a/profile",
+        "https://example.com/search?q=monitor&page=3"
+    };
+    
+    private PerformanceSketches performanceSketches;
+    private int next;
+    
+    @Setup
+    public void setup() {
+        // 只使用内存草图，不同步 Redis 快照；配置与 application.yml 的 sketch.* 默认值一致
+        performanceSketches = new PerformanceSketches(null);
+        set("relativeAccuracy", 0.02);
+        set("maxBins", 2048);
+        set("slotSeconds", 300L);
+        set("slots", 12);
+        set("maxPages", 500);
+        set("snapshotInterval", 30000L);
+    }
+    
+    @Benchmark
+    public void record() {
+        int i = next++;
+        performanceSketches.record("001", URLS[i % URLS.length], "loadTime", 800 + (i * 37 % 2400));
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        int i = next++;
+        performanceSketches.record("001", URLS[i % URLS.length], "loadTime", 800 + (i * 37 % 2400));
+    }
+    
+    private void set(String name, Object value) {
+        Field field = ReflectionUtils.findField(PerformanceSketches.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, performanceSketches, value);
+    }
+}
@@ -0,0 +1,51 @@
+package com.monitor.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DateUtil.formatDateTime：列表接口对每条记录的时间字段格式化，输入类型各不相同
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateUtilBenchmark {
+    
+    private Date date;
+    private Long epochMillis;
+    private String epochString;
+    private String isoString;
+    
+    @Setup
+    public void setup() {
+        date = new Date(1700000000000L);
+        epochMillis = 1700000000000L;
+        epochString = "1700000000000";
+        isoString = "2023-11-14T22:13:20.000Z";
+    }
+    
+    @Benchmark
+    public String fromDate() {
+        return DateUtil.formatDateTime(date);
+    }
+    
+    @Benchmark
+    public String fromEpochMillis() {
+        return DateUtil.formatDateTime(epochMillis);
+    }
+    
+    @Benchmark
+    public String fromEpochString() {
+        return DateUtil.formatDateTime(epochString);
+    }
+    
+    @Benchmark
+    public String fromIsoString() {
+        return DateUtil.formatDateTime(isoString);
+    }
+}
@@ -0,0 +1,145 @@
+package com.monitor.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuantileSketch：add 的更新开销、分位数查询和合并开销
+ * 每个分布的试验开始前先校验精度：分别用单个草图和 4 个草图合并（模拟跨节点合并）估计 p50/p75/p95/p99，
+ * 与排序后的精确分位数比较，相对误差超过 relativeAccuracy 时抛出异常，基准测试失败
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuantileSketchBenchmark {
+    
+    // 与 application.yml 中 sketch.relative-accuracy / sketch.max-bins 一致
+    private static final double RELATIVE_ACCURACY = 0.02;
+    private static final int MAX_BINS = 2048;
+    
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99};
+    private static final int ACCURACY_SAMPLES = 200_000;
+    private static final int VALUES = 1 << 16;
+    
+    /**
+     * uniform：0 ~ 5000ms 均匀分布
+     * lognormal：页面加载时间（中位数 1500ms）
+     * exponential：接口耗时（均值 300ms）
+     * pareto：长尾（最小 100ms，α = 1.2）
+     * cls：0 ~ 0.5 的小数值
+     */
+    @Param({"uniform", "lognormal", "exponential", "pareto", "cls"})
+    public String distribution;
+    
+    private double[] values;
+    private int next;
+    private QuantileSketch sketch;
+    private QuantileSketch other;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        verifyAccuracy(distribution);
+        
+        SplittableRandom random = new SplittableRandom(42);
+        values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = sample(distribution, random);
+        }
+        sketch = new QuantileSketch(RELATIVE_ACCURACY, MAX_BINS);
+        other = new QuantileSketch(RELATIVE_ACCURACY, MAX_BINS);
+        for (double value : values) {
+            sketch.add(value);
+            other.add(value);
+        }
+    }
+    
+    @Benchmark
+    public void add() {
+        sketch.add(values[next++ & (VALUES - 1)]);
+    }
+    
+    @Benchmark
+    public double quantile() {
+        return sketch.quantile(0.95);
+    }
+    
+    @Benchmark
+    public QuantileSketch mergeCopy() {
+        QuantileSketch merged = other.copy();
+        merged.merge(sketch);
+        return merged;
+    }
+    
+    /**
+     * 精度校验：单个草图和合并草图的分位数相对误差都不超过 relativeAccuracy
+     */
+    static void verifyAccuracy(String distribution) {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] samples = new double[ACCURACY_SAMPLES];
+        QuantileSketch single = new QuantileSketch(RELATIVE_ACCURACY, MAX_BINS);
+        QuantileSketch[] parts = new QuantileSketch[4];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new QuantileSketch(RELATIVE_ACCURACY, MAX_BINS);
+        }
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sample(distribution, random);
+            single.add(samples[i]);
+            parts[i % parts.length].add(samples[i]);
+        }
+        QuantileSketch merged = new QuantileSketch(RELATIVE_ACCURACY, MAX_BINS);
+        for (QuantileSketch part : parts) {
+            merged.merge(QuantileSketch.fromBytes(part.toBytes()));
+        }
+        Arrays.sort(samples);
+        
+        StringBuilder report = new StringBuilder("Sketch accuracy (" + distribution + "):");
+        for (double q : QUANTILES) {
+            // 与 QuantileSketch.quantile 相同的秩定义
+            double exact = samples[(int) Math.floor(q * (samples.length - 1))];
+            double singleError = relativeError(single.quantile(q), exact);
+            double mergedError = relativeError(merged.quantile(q), exact);
+            report.append(String.format(" p%d=%.4f/%.4f", Math.round(q * 100), singleError, mergedError));
+            if (singleError > RELATIVE_ACCURACY + 1e-9 || mergedError > RELATIVE_ACCURACY + 1e-9) {
+                throw new IllegalStateException(String.format(
+                    "%s p%d relative error exceeds %.2f: exact=%.6f, single=%.6f, merged=%.6f",
+                    distribution, Math.round(q * 100), RELATIVE_ACCURACY, exact,
+                    single.quantile(q), merged.quantile(q)));
+            }
+        }
+        System.out.println(report);
+    }
+    
+    private static double relativeError(double estimate, double exact) {
+        return exact == 0 ? Math.abs(estimate) : Math.abs(estimate - exact) / exact;
+    }
+    
+    private static double sample(String distribution, SplittableRandom random) {
+        switch (distribution) {
+            case "uniform":
+                return random.nextDouble() * 5000;
+            case "lognormal":
+                return Math.exp(Math.log(1500) + 0.6 * gaussian(random));
+            case "exponential":
+                return -300 * Math.log(1 - random.nextDouble());
+            case "pareto":
+                return 100 / Math.pow(1 - random.nextDouble(), 1 / 1.2);
+            case "cls":
+                return random.nextDouble() * 0.5;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+    }
+    
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
@@ -0,0 +1,21 @@
+package com.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dashboard 概览配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "dashboard")
+@Data
+public class DashboardConfig {
+    
+    private int threads = 8;                            // 并行获取各数据源的线程数
+    private long timeout = 2000;                        // 单个数据源的默认超时（毫秒）
+    private Map<String, Long> timeouts = new HashMap<>(); // 按数据源覆盖超时：errors / performance / behavior / api / counters
+}
@@ -23,6 +23,45 @@ public class ElasticsearchConfig {
     private String username;
     private String password;
     
+    /**
+     * 批量写入配置
+     */
+    private Bulk bulk = new Bulk();
+    
+    @Data
+    public static class Bulk {
+        private int maxOperations = 1000;           // 单次 bulk 最大文档数
+        private long maxSize = 5 * 1024 * 1024;     // 单次 bulk 最大字节数
+        private long flushInterval = 1000;          // 定时刷写间隔（毫秒）
+        private int maxConcurrentRequests = 2;      // 同时进行中的 bulk 请求数
+        private int maxRetries = 3;                 // 单条文档失败重试次数
+        private long retryInterval = 1000;          // 首次重试等待（毫秒），之后指数递增
+    }
+    
+    /**
+     * 索引配置（按天分索引）
+     */
+    private Index index = new Index();
+    
+    @Data
+    public static class Index {
+        private String prefix = "monitor-logs";     // 索引前缀，实际索引为 <prefix>-yyyy.MM.dd
+        private int shards = 1;                     // 每天索引的主分片数
+        private int replicas = 0;                   // 副本数
+        private int maxSearchDays = 62;             // 查询范围超过该天数时改用通配符匹配全部索引
+    }
+    
+    /**
+     * 日志查询分页配置
+     */
+    private Search search = new Search();
+    
+    @Data
+    public static class Search {
+        private boolean pitEnabled = true;          // 游标翻页时是否固定 point-in-time 快照
+        private String pitKeepAlive = "1m";         // 每次翻页后 point-in-time 的保持时间（保持较短，放弃翻页的快照尽快释放）
+    }
+    
     @Bean
     public ElasticsearchClient elasticsearchClient() {
         try {
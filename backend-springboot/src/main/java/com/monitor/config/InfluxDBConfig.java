@@ -7,6 +7,11 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * InfluxDB 配置
  */
@@ -21,6 +26,75 @@ public class InfluxDBConfig {
     private String bucket = "monitor";
     private String database = "monitor";
     
+    /**
+     * 批量写入配置
+     */
+    private Write write = new Write();
+    
+    @Data
+    public static class Write {
+        private int batchSize = 1000;       // 单批最大点数，达到后立即刷写
+        private long flushInterval = 1000;  // 定时刷写间隔（毫秒）
+        private int bufferLimit = 50000;    // 缓冲区上限，超出后丢弃新数据点
+        private int maxRetries = 3;         // 失败重试次数
+        private long retryInterval = 1000;  // 首次重试等待（毫秒），之后指数递增
+        private long jitterInterval = 500;  // 重试随机抖动上限（毫秒）
+        private boolean gzip = true;        // 是否启用 gzip 压缩
+    }
+    
+    /**
+     * 查询配置
+     */
+    private Query query = new Query();
+    
+    @Data
+    public static class Query {
+        private long timeout = 30000;       // 单次查询超时（毫秒）
+        private int topPages = 20;          // 按页面统计时返回的页面数
+    }
+    
+    /**
+     * 降采样配置
+     */
+    private Rollup rollup = new Rollup();
+    
+    @Data
+    public static class Rollup {
+        private boolean enabled = true;
+        private long interval = 60000;      // 降采样任务执行间隔（毫秒）
+        private long lag = 120000;          // 原始数据延迟到达的容忍时间（毫秒），1m 层只处理该时间之前的数据
+        private long backfill = 2592000000L; // 首次运行时回溯的时长（毫秒），默认 30 天
+        private int maxWindows = 360;       // 每次查询处理的最大窗口数
+        private int maxChunksPerRun = 10;   // 每次任务每层最多执行的查询次数（追赶历史数据时）
+    }
+    
+    /**
+     * 数据保留（按项目分块删除）
+     */
+    private Retention retention = new Retention();
+    
+    @Data
+    public static class Retention {
+        private long chunkHours = 24;       // 每次删除请求覆盖的时间范围（小时）
+        private long pauseMs = 200;         // 两次删除请求之间的间隔（毫秒）
+        private int maxChunksPerRun = 90;   // 单次保留任务每个项目最多删除的分块数
+        private boolean countDeleted = true; // 删除前统计数据点数（空分块跳过删除）
+        private int bucketRetentionDays = 0; // 大于 0 时设置 bucket 级保留策略（对所有项目生效）
+    }
+    
+    /**
+     * 标签基数控制
+     */
+    private Cardinality cardinality = new Cardinality();
+    
+    @Data
+    public static class Cardinality {
+        private int maxValues = 1000;       // 每个项目每个标签的取值上限，超出写为 __other__
+        private Map<String, Integer> limits = new HashMap<>();  // 按标签覆盖上限，如 url: 2000
+        private List<String> fieldDimensions = new ArrayList<>(List.of("userId", "sessionId"));  // 高基数维度，写为字段而非标签
+        private long syncInterval = 30000;  // 从 Redis 同步其他节点登记的标签取值的周期（毫秒）
+    }
+    
     @Bean
     public InfluxDBClient influxDBClient() {
         try {
@@ -32,6 +106,9 @@ public class InfluxDBConfig {
                 org != null ? org : "",
                 bucket
             );
+            if (write.isGzip()) {
+                client.enableGzip();
+            }
             System.out.println("✅ InfluxDB connected");
             return client;
         } catch (Exception e) {
@@ -0,0 +1,22 @@
+package com.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 上报管道配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+@Data
+public class IngestConfig {
+    
+    private boolean async = true;               // 是否通过环形缓冲区异步处理上报
+    private int ringSize = 8192;                // 环形缓冲区槽位数，必须为 2 的幂
+    private int consumers = 2;                  // 存储消费线程数
+    private String waitStrategy = "blocking";   // 等待策略：blocking / sleeping / yielding / busy-spin
+    private long shutdownTimeout = 30000;       // 关闭时等待缓冲区排空的超时（毫秒）
+    private String overflow = "sync";           // 缓冲区已满时的处理：reject（返回 503）/ sync（请求线程同步写入）
+    private int retryAfter = 1;                 // reject 时 Retry-After 响应头的秒数
+}
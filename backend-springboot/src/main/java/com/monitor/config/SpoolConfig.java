@@ -0,0 +1,22 @@
+package com.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 本地磁盘暂存配置
+ * InfluxDB / Elasticsearch 写入失败的数据先落盘，后端恢复后按速率回放
+ */
+@Configuration
+@ConfigurationProperties(prefix = "spool")
+@Data
+public class SpoolConfig {
+    
+    private boolean enabled = true;
+    private String dir = "./data/spool";             // 暂存目录，每个后端一个子目录
+    private int segmentSize = 16 * 1024 * 1024;      // 单个分段文件大小（字节）
+    private long maxBytes = 1024L * 1024 * 1024;     // 每个后端暂存上限（字节）
+    private int replayRate = 1000;                   // 回放速率（条/秒）
+    private long replayInterval = 1000;              // 回放检查间隔（毫秒）
+}
@@ -1,13 +1,15 @@
 package com.monitor.controller;
 
 import com.monitor.service.ApiMonitorService;
-import com.monitor.service.ElasticsearchService;
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.ReportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -19,7 +21,8 @@ import java.util.Map;
 public class ApiMonitorController {
     
     private final ApiMonitorService apiMonitorService;
-    private final ElasticsearchService elasticsearchService;
+    private final ReportService reportService;
+    private final IngestPipeline ingestPipeline;
     
     @Value("${default-project-id:001}")
     private String defaultProjectId;
@@ -44,45 +47,17 @@ public class ApiMonitorController {
     
     private ResponseEntity<Map<String, Object>> handleReport(Map<String, Object> body) {
         try {
-            // 调试日志：检查 userId 是否正确传递
-            if (body.get("userId") != null) {
-                System.out.println("API monitor report - userId: " + body.get("userId") + ", url: " + body.get("url"));
+            // 进入上报管道后立即返回，由后台线程写入存储
+            if (ingestPipeline.publish(defaultProjectId, ReportService.CATEGORY_API, body)) {
+                return ResponseEntity.accepted().body(Map.of("success", true));
             }
-            
-            apiMonitorService.report(
-                defaultProjectId,
-                (String) body.getOrDefault("url", ""),
-                (String) body.getOrDefault("method", "GET"),
-                body.get("status") != null ? ((Number) body.get("status")).intValue() : null,
-                body.get("responseTime") != null ? ((Number) body.get("responseTime")).longValue() : null,
-                (String) body.get("userId"),
-                (String) body.get("sessionId"),
-                body.get("requestData"),
-                body.get("responseData")
-            );
-            
-            // 异步写入 Elasticsearch（不阻塞主流程）
-            Map<String, Object> logData = new HashMap<>();
-            logData.put("projectId", defaultProjectId);
-            logData.put("type", "api");
-            logData.put("userId", body.get("userId"));
-            logData.put("sessionId", body.get("sessionId"));
-            logData.put("url", body.getOrDefault("url", ""));
-            logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
-            logData.put("method", body.getOrDefault("method", "GET"));
-            logData.put("status", body.get("status"));
-            logData.put("responseTime", body.get("responseTime"));
-            logData.put("message", body.getOrDefault("method", "GET") + " " + body.getOrDefault("url", "") + " - " + body.getOrDefault("status", 0) + " (" + body.getOrDefault("responseTime", 0) + "ms)");
-            logData.put("requestData", body.get("requestData"));
-            logData.put("responseData", body.get("responseData"));
-            
-            try {
-                elasticsearchService.writeLog(logData);
-            } catch (Exception e) {
-                System.out.println("⚠️ Elasticsearch write failed (non-blocking): " + e.getMessage());
+            // 缓冲区已满且配置为拒绝时返回 503，不占用请求线程同步写入存储
+            if (ingestPipeline.rejectsOverflow()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfter()))
+                    .body(Map.of("success", false, "message", "服务繁忙，请稍后重试"));
             }
-            
-            return ResponseEntity.ok(Map.of("success", true));
+            return ResponseEntity.ok(reportService.reportApi(defaultProjectId, body));
         } catch (Exception e) {
             System.err.println("API monitor report failed: " + e.getMessage());
             return ResponseEntity.ok(Map.of("success", false, "message", "上报失败"));
@@ -99,10 +74,11 @@ public class ApiMonitorController {
     public ResponseEntity<Map<String, Object>> getErrorDetails(
             @RequestParam String url,
             @RequestParam(required = false, defaultValue = "GET") String method) {
-        // TODO: 实现接口错误详情查询
+        Map<String, Object> detail = apiMonitorService.getErrorDetails(defaultProjectId, url, method);
         return ResponseEntity.ok(Map.of(
             "success", true,
-            "data", java.util.List.of()
+            "data", detail.get("errors"),
+            "stats", detail
         ));
     }
 }
@@ -0,0 +1,104 @@
+package com.monitor.controller;
+
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.ReportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量上报控制器
+ * 一次请求携带多条不同类别的事件，按顺序分发并返回逐条结果
+ */
+@RestController
+@RequestMapping("/batch")
+@RequiredArgsConstructor
+public class BatchController {
+    
+    private final ReportService reportService;
+    private final IngestPipeline ingestPipeline;
+    
+    @Value("${default-project-id:001}")
+    private String defaultProjectId;
+    
+    @Value("${batch.max-events:100}")
+    private int maxEvents;
+    
+    /**
+     * 批量上报
+     * 请求体为事件数组，每条事件格式：{ "category": "error|performance|behavior|api", "data": { ... } }
+     */
+    @PostMapping("/report")
+    public ResponseEntity<Map<String, Object>> report(@RequestBody List<Map<String, Object>> events) {
+        if (events == null || events.isEmpty()) {
+            return ResponseEntity.ok(Map.of("success", false, "message", "事件列表为空"));
+        }
+        if (events.size() > maxEvents) {
+            return ResponseEntity.ok(Map.of("success", false, "message", "单次最多上报 " + maxEvents + " 条事件"));
+        }
+        
+        List<Map<String, Object>> results = new ArrayList<>(events.size());
+        int accepted = 0;
+        int queued = 0;
+        int busy = 0;
+        for (int i = 0; i < events.size(); i++) {
+            Map<String, Object> result = handleEvent(events.get(i));
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                accepted++;
+            }
+            if (Boolean.TRUE.equals(result.get("queued"))) {
+                queued++;
+            }
+            if (Boolean.TRUE.equals(result.get("retry"))) {
+                busy++;
+            }
+            Map<String, Object> item = new HashMap<>(result);
+            item.put("index", i);
+            results.add(item);
+        }
+        
+        // 全部事件都已进入上报管道时返回 202，全部因缓冲区已满被拒绝时返回 503
+        int status = queued == events.size() ? 202 : busy == events.size() ? 503 : 200;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (busy > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfter()));
+        }
+        return response.body(Map.of(
+            "success", accepted == events.size(),
+            "accepted", accepted,
+            "rejected", events.size() - accepted,
+            "results", results
+        ));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> handleEvent(Map<String, Object> event) {
+        try {
+            if (event == null || !(event.get("data") instanceof Map)) {
+                return Map.of("success", false, "message", "事件数据格式错误");
+            }
+            String category = (String) event.get("category");
+            Map<String, Object> data = (Map<String, Object>) event.get("data");
+            if (!ReportService.isKnownCategory(category)) {
+                return Map.of("success", false, "message", "未知事件类别: " + category);
+            }
+            if (ingestPipeline.publish(defaultProjectId, category, data)) {
+                return Map.of("success", true, "queued", true);
+            }
+            if (ingestPipeline.rejectsOverflow()) {
+                return Map.of("success", false, "retry", true, "message", "服务繁忙，请稍后重试");
+            }
+            return reportService.dispatch(defaultProjectId, category, data);
+        } catch (Exception e) {
+            System.err.println("Batch event report failed: " + e.getMessage());
+            return Map.of("success", false, "message", "上报失败");
+        }
+    }
+}
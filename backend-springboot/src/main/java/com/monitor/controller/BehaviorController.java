@@ -1,13 +1,15 @@
 package com.monitor.controller;
 
 import com.monitor.service.BehaviorService;
-import com.monitor.service.ElasticsearchService;
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.ReportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -19,7 +21,8 @@ import java.util.Map;
 public class BehaviorController {
     
     private final BehaviorService behaviorService;
-    private final ElasticsearchService elasticsearchService;
+    private final ReportService reportService;
+    private final IngestPipeline ingestPipeline;
     
     @Value("${default-project-id:001}")
     private String defaultProjectId;
@@ -44,56 +47,17 @@ public class BehaviorController {
     
     private ResponseEntity<Map<String, Object>> handleReport(Map<String, Object> body) {
         try {
-            // 调试日志：记录路由变化和自定义事件的 userId
-            String type = (String) body.getOrDefault("type", "pv");
-            if ("route-change".equals(type) || "custom".equals(type)) {
-                System.out.println("📊 " + type + " event - userId: " + body.get("userId") + ", sessionId: " + body.get("sessionId"));
+            // 进入上报管道后立即返回，由后台线程写入存储
+            if (ingestPipeline.publish(defaultProjectId, ReportService.CATEGORY_BEHAVIOR, body)) {
+                return ResponseEntity.accepted().body(Map.of("success", true));
             }
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = (Map<String, Object>) body.get("data");
-            
-            behaviorService.report(
-                defaultProjectId,
-                type,
-                (String) body.getOrDefault("url", ""),
-                (String) body.get("path"),
-                (String) body.get("userId"),
-                (String) body.get("sessionId")
-            );
-            
-            // 异步写入 Elasticsearch（不阻塞主流程）
-            Map<String, Object> logData = new HashMap<>();
-            logData.put("projectId", defaultProjectId);
-            logData.put("type", "behavior");
-            logData.put("userId", body.get("userId"));
-            logData.put("sessionId", body.get("sessionId"));
-            logData.put("url", body.getOrDefault("url", ""));
-            logData.put("path", body.get("path"));
-            logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
-            logData.put("behaviorType", type);
-            
-            String message;
-            if ("route-change".equals(type)) {
-                message = "Route change: " + (data != null ? data.get("from") : "") + " -> " + (data != null ? data.get("to") : "");
-            } else if ("custom".equals(type)) {
-                message = "Custom event: " + (data != null ? data.get("eventName") : "");
-            } else {
-                message = type;
+            // 缓冲区已满且配置为拒绝时返回 503，不占用请求线程同步写入存储
+            if (ingestPipeline.rejectsOverflow()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfter()))
+                    .body(Map.of("success", false, "message", "服务繁忙，请稍后重试"));
             }
-            logData.put("message", message);
-            
-            if (data != null) {
-                logData.putAll(data);
-            }
-            
-            try {
-                elasticsearchService.writeLog(logData);
-            } catch (Exception e) {
-                System.out.println("⚠️ Elasticsearch write failed (non-blocking): " + e.getMessage());
-            }
-            
-            return ResponseEntity.ok(Map.of("success", true));
+            return ResponseEntity.ok(reportService.reportBehavior(defaultProjectId, body));
         } catch (Exception e) {
             System.err.println("Behavior report failed: " + e.getMessage());
             return ResponseEntity.ok(Map.of("success", false, "message", "上报失败"));
@@ -24,10 +24,12 @@ public class DataCleanupController {
     @PostMapping("/clear-all")
     public ResponseEntity<Map<String, Object>> clearAll() {
         try {
-            dataCleanupService.clearAllData(defaultProjectId);
+            Map<String, Object> result = dataCleanupService.clearAllData(defaultProjectId);
+            boolean cleared = DataCleanupService.allSucceeded(result);
             return ResponseEntity.ok(Map.of(
-                "success", true,
-                "message", "所有监控数据已清除"
+                "success", cleared,
+                "message", cleared ? "所有监控数据已清除" : "部分存储清除失败，详见各存储的结果",
+                "data", result
             ));
         } catch (Exception e) {
             System.err.println("Clear all data failed: " + e.getMessage());
@@ -37,5 +39,16 @@ public class DataCleanupController {
             ));
         }
     }
+    
+    /**
+     * 删除超过指定天数的数据
+     */
+    @PostMapping("/old-data")
+    public ResponseEntity<Map<String, Object>> deleteOldData(@RequestParam(required = false, defaultValue = "30") Integer days) {
+        if (days == null || days < 1) {
+            return ResponseEntity.ok(Map.of("success", false, "message", "days 必须大于 0"));
+        }
+        Map<String, Object> result = dataCleanupService.deleteOldData(defaultProjectId, days);
+        return ResponseEntity.ok(Map.of("success", DataCleanupService.allSucceeded(result), "data", result));
+    }
 }
-
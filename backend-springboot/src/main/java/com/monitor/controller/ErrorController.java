@@ -2,10 +2,13 @@ package com.monitor.controller;
 
 import com.monitor.entity.ErrorLog;
 import com.monitor.service.ErrorService;
-import com.monitor.service.ElasticsearchService;
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.ReportService;
 import com.monitor.util.DateUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,7 +27,8 @@ import java.util.stream.Collectors;
 public class ErrorController {
     
     private final ErrorService errorService;
-    private final ElasticsearchService elasticsearchService;
+    private final ReportService reportService;
+    private final IngestPipeline ingestPipeline;
     
     @Value("${default-project-id:001}")
     private String defaultProjectId;
@@ -50,56 +54,17 @@ public class ErrorController {
     
     private ResponseEntity<Map<String, Object>> handleReport(Map<String, Object> body) {
         try {
-            // 调试日志：记录接收到的错误信息
-            if ("resource".equals(body.get("type"))) {
-                System.out.println("📦 Resource error received: " + Map.of(
-                    "type", body.getOrDefault("type", ""),
-                    "message", body.getOrDefault("message", ""),
-                    "url", body.getOrDefault("url", ""),
-                    "userId", body.getOrDefault("userId", "")
-                ));
+            // 进入上报管道后立即返回，由后台线程写入存储
+            if (ingestPipeline.publish(defaultProjectId, ReportService.CATEGORY_ERROR, body)) {
+                return ResponseEntity.accepted().body(Map.of("success", true));
             }
-            
-            ErrorLog error = errorService.report(
-                defaultProjectId,
-                (String) body.getOrDefault("type", "js"),
-                (String) body.getOrDefault("message", "Unknown error"),
-                (String) body.get("stack"),
-                (String) body.get("url"),
-                body.get("line") != null ? ((Number) body.get("line")).intValue() : null,
-                body.get("col") != null ? ((Number) body.get("col")).intValue() : null,
-                (String) body.get("userAgent"),
-                (String) body.get("userId"),
-                (String) body.get("sessionId")
-            );
-            
-            if ("resource".equals(body.get("type"))) {
-                System.out.println("✅ Resource error saved: " + error.getId());
+            // 缓冲区已满且配置为拒绝时返回 503，不占用请求线程同步写入存储
+            if (ingestPipeline.rejectsOverflow()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfter()))
+                    .body(Map.of("success", false, "message", "服务繁忙，请稍后重试"));
             }
-            
-            // 异步写入 Elasticsearch（不阻塞主流程）
-            Map<String, Object> logData = new HashMap<>();
-            logData.put("projectId", defaultProjectId);
-            logData.put("type", "error");
-            logData.put("userId", body.get("userId"));
-            logData.put("sessionId", body.get("sessionId"));
-            logData.put("url", body.get("url"));
-            logData.put("timestamp", new java.util.Date().toInstant().toString());
-            logData.put("errorType", body.getOrDefault("type", "js"));
-            logData.put("errorMessage", body.getOrDefault("message", "Unknown error"));
-            logData.put("stack", body.get("stack"));
-            logData.put("line", body.get("line"));
-            logData.put("col", body.get("col"));
-            logData.put("userAgent", body.get("userAgent"));
-            logData.put("message", body.getOrDefault("message", "Unknown error"));
-            
-            try {
-                elasticsearchService.writeLog(logData);
-            } catch (Exception e) {
-                System.out.println("⚠️ Elasticsearch write failed (non-blocking): " + e.getMessage());
-            }
-            
-            return ResponseEntity.ok(Map.of("success", true, "id", error.getId()));
+            return ResponseEntity.ok(reportService.reportError(defaultProjectId, body));
         } catch (Exception e) {
             System.err.println("Error report failed: " + e.getMessage());
             return ResponseEntity.ok(Map.of("success", false, "message", "上报失败"));
@@ -1,5 +1,17 @@
 package com.monitor.controller;
 
+import com.monitor.service.CacheService;
+import com.monitor.service.ElasticsearchService;
+import com.monitor.service.ErrorAggregator;
+import com.monitor.service.InfluxDBWriter;
+import com.monitor.service.ApiLatencyStats;
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.PerformanceSketches;
+import com.monitor.service.RealtimeCounters;
+import com.monitor.service.RollupService;
+import com.monitor.service.StatsCache;
+import com.monitor.service.TagCardinalityGovernor;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -12,11 +24,47 @@ import java.util.Map;
  */
 @RestController
 @RequestMapping("/health")
+@RequiredArgsConstructor
 public class HealthController {
     
+    private final InfluxDBWriter influxDBWriter;
+    private final ElasticsearchService elasticsearchService;
+    private final IngestPipeline ingestPipeline;
+    private final ErrorAggregator errorAggregator;
+    private final StatsCache statsCache;
+    private final CacheService cacheService;
+    private final RealtimeCounters realtimeCounters;
+    private final PerformanceSketches performanceSketches;
+    private final ApiLatencyStats apiLatencyStats;
+    private final TagCardinalityGovernor tagCardinalityGovernor;
+    private final RollupService rollupService;
+    
     @GetMapping
     public ResponseEntity<Map<String, Object>> health() {
         return ResponseEntity.ok(Map.of("status", "ok", "service", "monitor-backend-springboot"));
     }
+    
+    /**
+     * 写入管道指标
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "data", Map.ofEntries(
+                Map.entry("ingest", ingestPipeline.getMetrics()),
+                Map.entry("errorAggregator", errorAggregator.getMetrics()),
+                Map.entry("influxdb", influxDBWriter.getMetrics()),
+                Map.entry("elasticsearch", elasticsearchService.getMetrics()),
+                Map.entry("statsCache", statsCache.getMetrics()),
+                Map.entry("cache", cacheService.getMetrics()),
+                Map.entry("counters", realtimeCounters.getMetrics()),
+                Map.entry("sketches", performanceSketches.getMetrics()),
+                Map.entry("apiStats", apiLatencyStats.getMetrics()),
+                Map.entry("cardinality", tagCardinalityGovernor.getMetrics()),
+                Map.entry("rollup", rollupService.getMetrics())
+            )
+        ));
+    }
 }
 
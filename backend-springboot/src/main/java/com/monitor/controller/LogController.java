@@ -32,7 +32,16 @@ public class LogController {
             @RequestParam(required = false) String startTime,
             @RequestParam(required = false) String endTime,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "20") Integer pageSize) {
+            @RequestParam(required = false, defaultValue = "20") Integer pageSize,
+            @RequestParam(required = false) String cursor) {
+        
+        // 游标只能是上一页返回的 nextCursor，篡改或截断的游标直接拒绝，避免按首页或空结果返回
+        if (!elasticsearchService.isValidCursor(cursor)) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "无效的游标，请使用上一页返回的 nextCursor 或从首页重新查询"
+            ));
+        }
         
         // 如果没有指定时间范围，默认查询最近7天，截止到当前时间
         String finalStartTime = startTime;
@@ -62,6 +71,7 @@ public class LogController {
             "endTime", finalEndTime != null ? finalEndTime : "",
             "page", page,
             "pageSize", pageSize,
+            "cursor", cursor != null ? cursor : "",
             "isConnected", elasticsearchService.isConnected()
         ));
         
@@ -74,11 +84,12 @@ public class LogController {
         params.put("endTime", finalEndTime);
         params.put("page", page);
         params.put("pageSize", pageSize);
+        params.put("cursor", cursor);
         
         Map<String, Object> result = elasticsearchService.searchLogs(params);
         
         System.out.println("📊 Log search result: " + Map.of(
-            "total", result.get("total"),
+            "total", String.valueOf(result.get("total")),
             "hitsCount", ((List<?>) result.get("hits")).size(),
             "isConnected", elasticsearchService.isConnected()
         ));
@@ -97,14 +108,17 @@ public class LogController {
             ));
         }
         
+        // 翻页使用 nextCursor，total 只在首页（不带 cursor）返回
+        Map<String, Object> data = new HashMap<>();
+        data.put("list", result.get("hits"));
+        data.put("total", result.get("total"));
+        data.put("page", result.get("page"));
+        data.put("pageSize", result.get("pageSize"));
+        data.put("nextCursor", result.get("nextCursor"));
+        
         return ResponseEntity.ok(Map.of(
             "success", true,
-            "data", Map.of(
-                "list", result.get("hits"),
-                "total", result.get("total"),
-                "page", result.get("page"),
-                "pageSize", result.get("pageSize")
-            )
+            "data", data
         ));
     }
     
@@ -135,18 +149,37 @@ public class LogController {
         }
     }
     
+    /**
+     * 存储统计：旧版单索引与按天索引的每文档字节数
+     */
+    @GetMapping("/storage")
+    public ResponseEntity<Map<String, Object>> storage() {
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "data", elasticsearchService.getStorageStats()
+        ));
+    }
+    
+    /**
+     * 把旧版 monitor-logs 索引迁移到按天索引（后台执行）
+     */
+    @PostMapping("/migrate")
+    public ResponseEntity<Map<String, Object>> migrate() {
+        return ResponseEntity.ok(elasticsearchService.migrateLegacyIndex());
+    }
+    
+    /**
+     * 日志统计（Elasticsearch 聚合）
+     * @param range 时间范围：1h / 24h / 7d / 30d
+     * @param limit 热门 URL / 用户的数量
+     */
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> stats() {
-        // TODO: 实现日志统计信息查询
+    public ResponseEntity<Map<String, Object>> stats(
+            @RequestParam(required = false, defaultValue = "24h") String range,
+            @RequestParam(required = false, defaultValue = "10") Integer limit) {
         return ResponseEntity.ok(Map.of(
             "success", true,
-            "data", Map.of(
-                "indexExists", false,
-                "documentCount", 0,
-                "isConnected", elasticsearchService.isConnected(),
-                "message", "功能待实现"
-            )
+            "data", elasticsearchService.getLogStats(defaultProjectId, range, Math.max(1, Math.min(100, limit)))
         ));
     }
 }
-
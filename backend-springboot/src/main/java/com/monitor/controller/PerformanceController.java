@@ -1,14 +1,16 @@
 package com.monitor.controller;
 
 import com.monitor.service.PerformanceService;
-import com.monitor.service.ElasticsearchService;
+import com.monitor.service.IngestPipeline;
+import com.monitor.service.ReportService;
 import com.monitor.util.DateUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -22,7 +24,8 @@ import java.util.stream.Collectors;
 public class PerformanceController {
     
     private final PerformanceService performanceService;
-    private final ElasticsearchService elasticsearchService;
+    private final ReportService reportService;
+    private final IngestPipeline ingestPipeline;
     
     @Value("${default-project-id:001}")
     private String defaultProjectId;
@@ -47,48 +50,17 @@ public class PerformanceController {
     
     private ResponseEntity<Map<String, Object>> handleReport(Map<String, Object> body) {
         try {
-            performanceService.report(
-                defaultProjectId,
-                (String) body.getOrDefault("url", ""),
-                (String) body.get("userId"),
-                (String) body.get("sessionId"),
-                body.get("loadTime") != null ? ((Number) body.get("loadTime")).longValue() : null,
-                body.get("domReady") != null ? ((Number) body.get("domReady")).longValue() : null,
-                body.get("fcp") != null ? ((Number) body.get("fcp")).longValue() : null,
-                body.get("lcp") != null ? ((Number) body.get("lcp")).longValue() : null,
-                body.get("fid") != null ? ((Number) body.get("fid")).longValue() : null,
-                body.get("cls") != null ? ((Number) body.get("cls")).doubleValue() : null,
-                body.get("dns") != null ? ((Number) body.get("dns")).longValue() : null,
-                body.get("tcp") != null ? ((Number) body.get("tcp")).longValue() : null,
-                body.get("ttfb") != null ? ((Number) body.get("ttfb")).longValue() : null
-            );
-            
-            // 异步写入 Elasticsearch（不阻塞主流程）
-            Map<String, Object> logData = new HashMap<>();
-            logData.put("projectId", defaultProjectId);
-            logData.put("type", "performance");
-            logData.put("userId", body.get("userId"));
-            logData.put("sessionId", body.get("sessionId"));
-            logData.put("url", body.getOrDefault("url", ""));
-            logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
-            logData.put("loadTime", body.get("loadTime"));
-            logData.put("domReady", body.get("domReady"));
-            logData.put("fcp", body.get("fcp"));
-            logData.put("lcp", body.get("lcp"));
-            logData.put("fid", body.get("fid"));
-            logData.put("cls", body.get("cls"));
-            logData.put("dns", body.get("dns"));
-            logData.put("tcp", body.get("tcp"));
-            logData.put("ttfb", body.get("ttfb"));
-            logData.put("message", "Performance metrics: loadTime=" + body.getOrDefault("loadTime", 0) + "ms");
-            
-            try {
-                elasticsearchService.writeLog(logData);
-            } catch (Exception e) {
-                System.out.println("⚠️ Elasticsearch write failed (non-blocking): " + e.getMessage());
+            // 进入上报管道后立即返回，由后台线程写入存储
+            if (ingestPipeline.publish(defaultProjectId, ReportService.CATEGORY_PERFORMANCE, body)) {
+                return ResponseEntity.accepted().body(Map.of("success", true));
             }
-            
-            return ResponseEntity.ok(Map.of("success", true));
+            // 缓冲区已满且配置为拒绝时返回 503，不占用请求线程同步写入存储
+            if (ingestPipeline.rejectsOverflow()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfter()))
+                    .body(Map.of("success", false, "message", "服务繁忙，请稍后重试"));
+            }
+            return ResponseEntity.ok(reportService.reportPerformance(defaultProjectId, body));
         } catch (Exception e) {
             System.err.println("Performance report failed: " + e.getMessage());
             return ResponseEntity.ok(Map.of("success", false, "message", "上报失败"));
@@ -110,9 +82,27 @@ public class PerformanceController {
         ));
     }
     
+    /**
+     * 性能统计
+     * @param range 时间范围：1h / 24h / 7d / 30d
+     */
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> stats() {
-        Map<String, Object> stats = performanceService.getStats(defaultProjectId);
+    public ResponseEntity<Map<String, Object>> stats(@RequestParam(required = false, defaultValue = "24h") String range) {
+        Map<String, Object> stats = performanceService.getStats(defaultProjectId, range);
+        return ResponseEntity.ok(Map.of("success", true, "data", stats));
+    }
+    
+    /**
+     * 实时分位数（最近窗口，内存草图）
+     * @param url 页面，为空时返回项目整体及按页面排序的分位数
+     * @param metric 页面排序使用的指标
+     */
+    @GetMapping("/realtime")
+    public ResponseEntity<Map<String, Object>> realtime(
+            @RequestParam(required = false) String url,
+            @RequestParam(required = false, defaultValue = "lcp") String metric,
+            @RequestParam(required = false, defaultValue = "20") Integer limit) {
+        Map<String, Object> stats = performanceService.getRealtimeStats(defaultProjectId, url, metric, limit);
         return ResponseEntity.ok(Map.of("success", true, "data", stats));
     }
 }
@@ -2,6 +2,7 @@ package com.monitor.entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -11,6 +12,7 @@ import java.util.Date;
  * 错误详情实体 - MongoDB
  */
 @Document(collection = "errors")
+@CompoundIndex(name = "projectId_errorHash", def = "{'projectId': 1, 'errorHash': 1}", unique = true)
 @Data
 public class ErrorLog {
     
@@ -0,0 +1,497 @@
+package com.monitor.service;
+
+import com.monitor.util.LatencyHistogram;
+import com.monitor.util.UrlNormalizer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口延迟与成功率统计
+ * 按 (项目, 方法, 归一化 URL) 在内存中维护滑动窗口内的延迟直方图和状态码分类计数，
+ * 查询时合并窗口内的时间槽；各节点定时把本地窗口快照写入 Redis 并合并其他节点的快照
+ */
+@Service
+@RequiredArgsConstructor
+public class ApiLatencyStats {
+    
+    /**
+     * 接口数超过上限后归入该接口
+     */
+    public static final String OTHER_ENDPOINTS = "__other__";
+    
+    /**
+     * 状态码分类：0 为网络错误 / 无状态码，1 ~ 5 对应 1xx ~ 5xx
+     */
+    private static final int STATUS_CLASSES = 6;
+    
+    private final CacheService cacheService;
+    
+    @Value("${api-stats.slot-seconds:300}")
+    private long slotSeconds;
+    
+    @Value("${api-stats.slots:12}")
+    private int slots;
+    
+    @Value("${api-stats.max-endpoints:1000}")
+    private int maxEndpoints;
+    
+    @Value("${api-stats.error-samples:20}")
+    private int errorSamples;
+    
+    @Value("${api-stats.snapshot-interval:30000}")
+    private long snapshotInterval;
+    
+    /**
+     * key：projectId|method|url
+     */
+    private final ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> endpointsByProject = new ConcurrentHashMap<>();
+    
+    /**
+     * 其他节点的接口统计（已合并），每次同步后整体替换
+     */
+    private volatile Map<String, EndpointStats> remote = new HashMap<>();
+    
+    /**
+     * Redis 中的节点快照（api-stats:snapshot:{nodeId}），同一接口在各节点的时间槽按 epoch 合并
+     */
+    private NodeSnapshots<EndpointStats> snapshots;
+    
+    @PostConstruct
+    public void init() {
+        snapshots = new NodeSnapshots<>(cacheService, "api-stats", value -> {
+            EndpointStats stats = new EndpointStats();
+            decode(value).forEach(stats::mergeSlot);
+            return stats;
+        }, (a, b) -> {
+            a.merge(b);
+            return a;
+        });
+    }
+    
+    /**
+     * 一个时间槽
+     */
+    private static class Slot {
+        long epoch;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] statuses = new long[STATUS_CLASSES];
+        
+        void clear(long epoch) {
+            this.epoch = epoch;
+            histogram.clear();
+            java.util.Arrays.fill(statuses, 0);
+        }
+    }
+    
+    /**
+     * 单个接口的滑动窗口：slots 个时间槽，每槽 slotSeconds 秒
+     */
+    private class EndpointStats {
+        private final Slot[] ring = new Slot[slots];
+        private final Deque<Map<String, Object>> samples = new ArrayDeque<>();
+        
+        synchronized void record(int statusClass, long responseTime, long epoch) {
+            Slot slot = slot(epoch);
+            slot.statuses[statusClass]++;
+            slot.histogram.record(responseTime);
+        }
+        
+        synchronized void addSample(Map<String, Object> sample) {
+            if (samples.size() >= errorSamples) {
+                samples.pollLast();
+            }
+            samples.addFirst(sample);
+        }
+        
+        synchronized List<Map<String, Object>> samples() {
+            return new ArrayList<>(samples);
+        }
+        
+        /**
+         * 把窗口内的时间槽按 epoch 累加到 target
+         */
+        synchronized void collect(long currentEpoch, Map<Long, Slot> target) {
+            for (Slot slot : ring) {
+                if (slot != null && currentEpoch - slot.epoch < slots && slot.epoch <= currentEpoch) {
+                    Slot merged = target.computeIfAbsent(slot.epoch, e -> {
+                        Slot s = new Slot();
+                        s.epoch = e;
+                        return s;
+                    });
+                    merged.histogram.merge(slot.histogram);
+                    for (int i = 0; i < STATUS_CLASSES; i++) {
+                        merged.statuses[i] += slot.statuses[i];
+                    }
+                }
+            }
+        }
+        
+        synchronized void merge(EndpointStats other) {
+            for (Slot slot : other.ring) {
+                if (slot != null) {
+                    mergeSlot(slot);
+                }
+            }
+        }
+        
+        synchronized void mergeSlot(Slot other) {
+            Slot slot = slot(other.epoch);
+            slot.histogram.merge(other.histogram);
+            for (int i = 0; i < STATUS_CLASSES; i++) {
+                slot.statuses[i] += other.statuses[i];
+            }
+        }
+        
+        private Slot slot(long epoch) {
+            int index = (int) (epoch % slots);
+            Slot slot = ring[index];
+            if (slot == null) {
+                slot = new Slot();
+                slot.epoch = epoch;
+                ring[index] = slot;
+            } else if (slot.epoch != epoch) {
+                slot.clear(epoch);
+            }
+            return slot;
+        }
+    }
+    
+    /**
+     * 窗口聚合结果
+     */
+    private static class Window {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] statuses = new long[STATUS_CLASSES];
+        
+        void add(Slot slot) {
+            histogram.merge(slot.histogram);
+            for (int i = 0; i < STATUS_CLASSES; i++) {
+                statuses[i] += slot.statuses[i];
+            }
+        }
+        
+        long total() {
+            return histogram.getCount();
+        }
+        
+        long success() {
+            return statuses[2] + statuses[3];
+        }
+    }
+    
+    /**
+     * 记录一次接口调用
+     */
+    public void record(String projectId, String method, String url, Integer status, Long responseTime,
+                       Object requestData, Object responseData) {
+        if (projectId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String normalizedMethod = normalizeMethod(method);
+        String endpoint = endpointOf(projectId, normalizedMethod, UrlNormalizer.normalize(url));
+        EndpointStats stats = endpoints.computeIfAbsent(key(projectId, endpoint), k -> new EndpointStats());
+        int statusClass = statusClass(status);
+        stats.record(statusClass, responseTime != null ? responseTime : 0L, epochOf(now));
+        
+        if (!isSuccess(statusClass)) {
+            // 保留最近的失败请求样本，供错误详情查看
+            Map<String, Object> sample = new HashMap<>();
+            sample.put("time", Instant.ofEpochMilli(now).toString());
+            sample.put("url", url);
+            sample.put("method", normalizedMethod);
+            sample.put("status", status != null ? status : 0);
+            sample.put("responseTime", responseTime != null ? responseTime : 0L);
+            sample.put("requestData", requestData);
+            sample.put("responseData", responseData);
+            stats.addSample(sample);
+        }
+    }
+    
+    /**
+     * 项目整体统计及接口排行
+     */
+    public Map<String, Object> getStats(String projectId, int limit) {
+        long currentEpoch = epochOf(System.currentTimeMillis());
+        Window overall = new Window();
+        Map<Long, Window> timeline = new TreeMap<>();
+        List<Map<String, Object>> apis = new ArrayList<>();
+        
+        for (String endpoint : endpointKeys(projectId)) {
+            Map<Long, Slot> slotsByEpoch = collect(key(projectId, endpoint), currentEpoch);
+            if (slotsByEpoch.isEmpty()) {
+                continue;
+            }
+            Window window = new Window();
+            slotsByEpoch.forEach((epoch, slot) -> {
+                window.add(slot);
+                overall.add(slot);
+                timeline.computeIfAbsent(epoch, e -> new Window()).add(slot);
+            });
+            Map<String, Object> item = summarize(window);
+            String[] parts = endpoint.split("\\|", 2);
+            item.put("method", parts[0]);
+            item.put("url", parts[1]);
+            apis.add(item);
+        }
+        
+        Map<String, Object> stats = summarize(overall);
+        Map<String, Object> timeStats = new LinkedHashMap<>();
+        timeline.forEach((epoch, window) -> {
+            Map<String, Object> point = new HashMap<>();
+            point.put("total", window.total());
+            point.put("success", window.success());
+            point.put("error", window.total() - window.success());
+            point.put("avgResponseTime", window.histogram.getMean());
+            point.put("p95", window.histogram.percentile(0.95));
+            timeStats.put(Instant.ofEpochMilli(epoch * slotSeconds * 1000).toString(), point);
+        });
+        stats.put("timeStats", timeStats);
+        stats.put("topApis", top(apis, Comparator.comparingLong(a -> (Long) a.get("total")), limit));
+        stats.put("slowestApis", top(apis, Comparator.comparingLong(a -> (Long) a.get("p95")), limit));
+        stats.put("failingApis", top(apis.stream().filter(a -> (Long) a.get("error") > 0).toList(),
+            Comparator.comparingLong(a -> (Long) a.get("error")), limit));
+        stats.put("endpoints", apis.size());
+        stats.put("windowSeconds", getWindowSeconds());
+        return stats;
+    }
+    
+    /**
+     * 单个接口的统计和最近的失败请求
+     */
+    public Map<String, Object> getEndpoint(String projectId, String method, String url) {
+        String endpoint = normalizeMethod(method) + "|" + UrlNormalizer.normalize(url);
+        String key = key(projectId, endpoint);
+        Window window = new Window();
+        collect(key, epochOf(System.currentTimeMillis())).values().forEach(window::add);
+        
+        Map<String, Object> result = summarize(window);
+        result.put("method", normalizeMethod(method));
+        result.put("url", UrlNormalizer.normalize(url));
+        EndpointStats local = endpoints.get(key);
+        result.put("errors", local != null ? local.samples() : List.of());
+        return result;
+    }
+    
+    /**
+     * 窗口长度（秒）
+     */
+    public long getWindowSeconds() {
+        return slotSeconds * slots;
+    }
+    
+    /**
+     * 编码各接口窗口内的时间槽作为本节点快照，同时换入其他节点的合并结果
+     */
+    @Scheduled(fixedDelayString = "${api-stats.snapshot-interval:30000}")
+    public void snapshot() {
+        try {
+            remote = snapshots.sync(this::localSnapshot, this::discardLocal, snapshotInterval);
+        } catch (Exception e) {
+            System.err.println("⚠️ API stats snapshot sync failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 丢弃项目的接口统计（清除项目数据时调用），其他节点在下次同步时丢弃各自的数据
+     */
+    public void discard(String projectId) {
+        discardLocal(projectId);
+        String prefix = projectId + "|";
+        Map<String, EndpointStats> others = new HashMap<>(remote);
+        others.keySet().removeIf(key -> key.startsWith(prefix));
+        remote = others;
+        snapshots.purge(projectId, snapshotInterval);
+    }
+    
+    private void discardLocal(String projectId) {
+        String prefix = projectId + "|";
+        endpoints.keySet().removeIf(key -> key.startsWith(prefix));
+        endpointsByProject.remove(projectId);
+    }
+    
+    private Map<String, String> localSnapshot() {
+        long currentEpoch = epochOf(System.currentTimeMillis());
+        Map<String, String> fields = new HashMap<>();
+        endpoints.forEach((key, stats) -> {
+            Map<Long, Slot> slotsByEpoch = new TreeMap<>();
+            stats.collect(currentEpoch, slotsByEpoch);
+            if (slotsByEpoch.isEmpty()) {
+                // 窗口内已没有调用的接口不再跟踪
+                endpoints.remove(key, stats);
+                removeEndpoint(key);
+            } else {
+                fields.put(key, encode(slotsByEpoch.values()));
+            }
+        });
+        return fields;
+    }
+    
+    /**
+     * 统计指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("localEndpoints", endpoints.size());
+        metrics.put("remoteEndpoints", remote.size());
+        metrics.put("projects", endpointsByProject.size());
+        metrics.put("windowSeconds", getWindowSeconds());
+        return metrics;
+    }
+    
+    private Map<Long, Slot> collect(String key, long currentEpoch) {
+        Map<Long, Slot> slotsByEpoch = new TreeMap<>();
+        EndpointStats local = endpoints.get(key);
+        if (local != null) {
+            local.collect(currentEpoch, slotsByEpoch);
+        }
+        EndpointStats other = remote.get(key);
+        if (other != null) {
+            other.collect(currentEpoch, slotsByEpoch);
+        }
+        return slotsByEpoch;
+    }
+    
+    /**
+     * 本地和其他节点快照中该项目的接口（method|url）
+     */
+    private Set<String> endpointKeys(String projectId) {
+        Set<String> keys = new java.util.HashSet<>(endpointsByProject.getOrDefault(projectId, Set.of()));
+        String prefix = projectId + "|";
+        for (String key : remote.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key.substring(prefix.length()));
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * 限制每个项目的接口数
+     */
+    private String endpointOf(String projectId, String method, String url) {
+        String endpoint = method + "|" + url;
+        Set<String> known = endpointsByProject.computeIfAbsent(projectId, k -> ConcurrentHashMap.newKeySet());
+        if (known.contains(endpoint)) {
+            return endpoint;
+        }
+        if (known.size() >= maxEndpoints) {
+            endpoint = method + "|" + OTHER_ENDPOINTS;
+        }
+        known.add(endpoint);
+        return endpoint;
+    }
+    
+    private void removeEndpoint(String key) {
+        String[] parts = key.split("\\|", 2);
+        Set<String> known = endpointsByProject.get(parts[0]);
+        if (known != null && parts.length == 2) {
+            known.remove(parts[1]);
+        }
+    }
+    
+    private Map<String, Object> summarize(Window window) {
+        long total = window.total();
+        long success = window.success();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total);
+        stats.put("success", success);
+        stats.put("error", total - success);
+        stats.put("successRate", total > 0 ? Math.round(success * 10000.0 / total) / 100.0 : 100.0);
+        stats.put("avgResponseTime", window.histogram.getMean());
+        stats.put("p50", window.histogram.percentile(0.5));
+        stats.put("p95", window.histogram.percentile(0.95));
+        stats.put("p99", window.histogram.percentile(0.99));
+        stats.put("maxResponseTime", window.histogram.getMax());
+        
+        Map<String, Long> statusCodes = new LinkedHashMap<>();
+        for (int i = 1; i < STATUS_CLASSES; i++) {
+            statusCodes.put(i + "xx", window.statuses[i]);
+        }
+        statusCodes.put("network", window.statuses[0]);
+        stats.put("statusCodes", statusCodes);
+        return stats;
+    }
+    
+    private List<Map<String, Object>> top(List<Map<String, Object>> apis, Comparator<Map<String, Object>> comparator, int limit) {
+        return apis.stream().sorted(comparator.reversed()).limit(limit).toList();
+    }
+    
+    /**
+     * 序列化窗口内的时间槽：槽数 + (epoch, 状态计数, 直方图)
+     */
+    private String encode(java.util.Collection<Slot> slotList) {
+        int size = 4;
+        for (Slot slot : slotList) {
+            size += 8 + 8 * STATUS_CLASSES + slot.histogram.serializedSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(slotList.size());
+        for (Slot slot : slotList) {
+            buffer.putLong(slot.epoch);
+            for (long status : slot.statuses) {
+                buffer.putLong(status);
+            }
+            slot.histogram.writeTo(buffer);
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+    
+    private List<Slot> decode(String value) {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(value));
+        int count = buffer.getInt();
+        List<Slot> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Slot slot = new Slot();
+            slot.epoch = buffer.getLong();
+            for (int j = 0; j < STATUS_CLASSES; j++) {
+                slot.statuses[j] = buffer.getLong();
+            }
+            slot.histogram.merge(LatencyHistogram.readFrom(buffer));
+            result.add(slot);
+        }
+        return result;
+    }
+    
+    private static int statusClass(Integer status) {
+        if (status == null || status < 100 || status > 599) {
+            return 0;
+        }
+        return status / 100;
+    }
+    
+    private static boolean isSuccess(int statusClass) {
+        return statusClass == 2 || statusClass == 3;
+    }
+    
+    private static String normalizeMethod(String method) {
+        return method == null || method.isEmpty() ? "GET" : method.toUpperCase();
+    }
+    
+    private long epochOf(long millis) {
+        return millis / (slotSeconds * 1000);
+    }
+    
+    private String key(String projectId, String endpoint) {
+        return projectId + "|" + endpoint;
+    }
+}
@@ -1,10 +1,12 @@
 package com.monitor.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * 接口监控服务
@@ -15,6 +17,11 @@ public class ApiMonitorService {
     
     private final InfluxDBService influxDBService;
     private final CacheService cacheService;
+    private final StatsCache statsCache;
+    private final ApiLatencyStats apiLatencyStats;
+    
+    @Value("${api-stats.top-limit:10}")
+    private int topLimit;
     
     /**
      * 上报接口监控数据
@@ -32,35 +39,68 @@ public class ApiMonitorService {
                       Object requestData, Object responseData) {
         influxDBService.writeApiMonitor(projectId, url, method, status, responseTime, userId, sessionId);
         
-        // 清除统计缓存
-        cacheService.delete("api:stats:" + projectId);
-        cacheService.delete("dashboard:" + projectId);
+        // 更新内存中的延迟直方图和状态码计数
+        apiLatencyStats.record(projectId, method, url, status, responseTime, requestData, responseData);
+        
+        // 标记统计缓存失效（定时合并为一次版本递增）
+        statsCache.markDirty(StatsCache.MODULE_API, projectId);
     }
     
     /**
-     * 获取接口统计
+     * 获取接口统计（滑动窗口内的内存统计，不查询数据库）
      */
     public Map<String, Object> getStats(String projectId) {
-        // 尝试从缓存获取
-        Map<String, Object> cached = cacheService.get("api:stats:" + projectId, Map.class);
-        if (cached != null) {
-            return cached;
+        Map<String, Object> stats = new HashMap<>(getWindowStats(projectId));
+        // 滑动窗口内按槽的统计保留为 windowTimeStats，timeStats 为最近 7 天的趋势
+        stats.put("windowTimeStats", stats.get("timeStats"));
+        stats.put("timeStats", getTrend(projectId));
+        return stats;
+    }
+    
+    /**
+     * 滑动窗口内的接口统计（不含 7 天趋势，不查询数据库）
+     */
+    public Map<String, Object> getWindowStats(String projectId) {
+        return apiLatencyStats.getStats(projectId, topLimit);
+    }
+    
+    /**
+     * 最近 7 天的请求数、成功率和平均耗时趋势（读取降采样层，结果经统计缓存）
+     */
+    public Map<String, Object> getTrend(String projectId) {
+        try {
+            return statsCache.get(StatsCache.MODULE_API, projectId + ":trend", 300L, () -> computeTrend(projectId));
+        } catch (Exception e) {
+            System.err.println("API trend query failed: " + e.getMessage());
+            return new HashMap<>();
         }
+    }
+    
+    private Map<String, Object> computeTrend(String projectId) {
+        Map<String, double[]> responseTime = influxDBService.queryCounterTrend(
+            projectId, "api_monitor", "responseTime", null, InfluxDBService.TREND_RANGE);
+        Map<String, double[]> success = influxDBService.queryCounterTrend(
+            projectId, "api_monitor", "success", null, InfluxDBService.TREND_RANGE);
         
-        // TODO: 从 InfluxDB 查询统计数据
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", 0L);
-        stats.put("success", 0L);
-        stats.put("error", 0L);
-        stats.put("successRate", 100.0);
-        stats.put("avgResponseTime", 0L);
-        stats.put("timeStats", new HashMap<>());
-        stats.put("topApis", new java.util.ArrayList<>());
-        
-        // 缓存结果
-        cacheService.set("api:stats:" + projectId, stats, 60L);
-        
-        return stats;
+        Map<String, Object> timeStats = new TreeMap<>();
+        responseTime.forEach((time, countSum) -> {
+            long total = Math.round(countSum[0]);
+            long ok = Math.round(success.getOrDefault(time, new double[2])[1]);
+            Map<String, Object> point = new HashMap<>();
+            point.put("total", total);
+            point.put("success", ok);
+            point.put("error", total - ok);
+            point.put("successRate", total > 0 ? Math.round(ok * 10000.0 / total) / 100.0 : 100.0);
+            point.put("avgResponseTime", total > 0 ? Math.round(countSum[1] / total) : 0L);
+            timeStats.put(time, point);
+        });
+        return timeStats;
+    }
+    
+    /**
+     * 获取接口错误详情
+     */
+    public Map<String, Object> getErrorDetails(String projectId, String url, String method) {
+        return apiLatencyStats.getEndpoint(projectId, method, url);
     }
 }
-
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * 用户行为服务
@@ -15,6 +16,7 @@ public class BehaviorService {
     
     private final InfluxDBService influxDBService;
     private final CacheService cacheService;
+    private final StatsCache statsCache;
     
     /**
      * 上报用户行为
@@ -31,9 +33,8 @@ public class BehaviorService {
             }
         }
         
-        // 清除统计缓存
-        cacheService.delete("behavior:stats:" + projectId);
-        cacheService.delete("dashboard:" + projectId);
+        // 标记统计缓存失效（定时合并为一次版本递增）
+        statsCache.markDirty(StatsCache.MODULE_BEHAVIOR, projectId);
     }
     
     /**
@@ -48,17 +49,13 @@ public class BehaviorService {
      */
     public Map<String, Object> getStats(String projectId, String type) {
         // 如果指定了类型，不使用缓存
-        String cacheKey = "behavior:stats:" + projectId + (type != null ? ":" + type : "");
         if (type == null) {
-            Map<String, Object> cached = cacheService.get(cacheKey, Map.class);
-            if (cached != null) {
-                return cached;
-            }
+            return statsCache.get(StatsCache.MODULE_BEHAVIOR, projectId, 60L, () -> computeStats(projectId, null));
         }
-        
-        // TODO: 从 InfluxDB 查询统计数据
-        // 这里简化处理，实际应该查询 InfluxDB
-        
+        return computeStats(projectId, type);
+    }
+    
+    private Map<String, Object> computeStats(String projectId, String type) {
         Map<String, Object> stats = new HashMap<>();
         if (type == null || "pv".equals(type)) {
             stats.put("pv", cacheService.getTodayPV(projectId));
@@ -66,16 +63,30 @@ public class BehaviorService {
         }
         stats.put("type", type != null ? type : "pv");
         stats.put("total", type == null || "pv".equals(type) ? cacheService.getTodayPV(projectId) : 0L);
-        stats.put("timeStats", new HashMap<>());
+        Map<String, Long> timeStats = queryTimeStats(projectId, type != null ? type : "pv");
+        stats.put("timeStats", timeStats != null ? timeStats : new TreeMap<>());
         stats.put("topPages", new java.util.ArrayList<>());
         stats.put("topItems", new java.util.ArrayList<>());
-        
-        // 缓存结果（仅当没有指定类型时）
-        if (type == null) {
-            cacheService.set(cacheKey, stats, 60L);
+        // 趋势查询失败时标记为 partial，统计缓存不会保存该结果
+        if (timeStats == null) {
+            stats.put("partial", true);
         }
-        
         return stats;
     }
+    
+    /**
+     * 行为次数时间趋势（读取降采样层，不扫描原始数据）
+     * @return 查询失败时返回 null
+     */
+    private Map<String, Long> queryTimeStats(String projectId, String type) {
+        Map<String, Long> timeStats = new TreeMap<>();
+        try {
+            influxDBService.queryCounterTrend(projectId, "behavior", "count", Map.of("type", type), InfluxDBService.TREND_RANGE)
+                .forEach((time, countSum) -> timeStats.put(time, Math.round(countSum[1])));
+        } catch (Exception e) {
+            System.err.println("Behavior trend query failed: " + e.getMessage());
+            return null;
+        }
+        return timeStats;
+    }
 }
-
@@ -1,43 +1,185 @@
 package com.monitor.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Redis 缓存服务
+ * get/set/delete 的缓存数据在本地 Caffeine 一级缓存中保留较短时间，
+ * 写入和删除时通过 Redis pub/sub 通知其他实例清除本地副本
  */
 @Service
 @RequiredArgsConstructor
-public class CacheService {
+public class CacheService implements MessageListener {
     
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RealtimeCounters realtimeCounters;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     private static final String PREFIX = "monitor:";
+    private static final String ALL_KEYS = "*";
+    
+    private static final RedisScript<Long> ADD_IF_BELOW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('SISMEMBER', KEYS[1], ARGV[1]) == 1 then return 1 end "
+            + "if redis.call('SCARD', KEYS[1]) < tonumber(ARGV[2]) then redis.call('SADD', KEYS[1], ARGV[1]) return 1 end "
+            + "return 0",
+        Long.class);
+    
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+        Long.class);
+    
+    private static final RedisScript<Long> RENEW_LOCK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) end return 0",
+        Long.class);
+    
+    /**
+     * 本实例标识，忽略自己发出的失效通知
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    @Value("${cache.local.enabled:true}")
+    private boolean localEnabled;
+    
+    @Value("${cache.local.maximum-size:10000}")
+    private long localMaximumSize;
+    
+    /**
+     * 本地缓存时间（秒），不超过写入 Redis 时的 TTL
+     */
+    @Value("${cache.local.expire-after-write:5}")
+    private long localExpireAfterWrite;
+    
+    @Value("${cache.local.invalidation-channel:monitor:cache:invalidate}")
+    private String invalidationChannel;
+    
+    @Value("${cache.purge.batch-size:500}")
+    private int purgeBatchSize;
+    
+    @Value("${cache.purge.max-keys-per-second:10000}")
+    private long purgeMaxKeysPerSecond;
+    
+    private Cache<String, Object> localCache;
+    private volatile boolean subscribed;
+    
+    private final AtomicLong invalidationsSent = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+    
+    @Value("${error-users.retention-days:30}")
+    private int errorUsersRetentionDays;
+    
+    @Value("${error-users.exact-limit:0}")
+    private int errorUsersExactLimit;
+    
+    @PostConstruct
+    public void init() {
+        if (!localEnabled) {
+            return;
+        }
+        Duration defaultTtl = Duration.ofSeconds(localExpireAfterWrite);
+        localCache = Caffeine.newBuilder()
+            .maximumSize(localMaximumSize)
+            .expireAfter(new Expiry<String, Object>() {
+                @Override
+                public long expireAfterCreate(String key, Object value, long currentTime) {
+                    return defaultTtl.toNanos();
+                }
+                
+                @Override
+                public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+                    return defaultTtl.toNanos();
+                }
+                
+                @Override
+                public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+    
+    /**
+     * 订阅失效通知频道
+     * 启动时 Redis 可能不可用，由定时任务重试，订阅成功前本地缓存仅依赖过期时间
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${cache.local.resubscribe-interval:30000}")
+    public void subscribeInvalidation() {
+        if (localCache == null || subscribed) {
+            return;
+        }
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(invalidationChannel));
+            subscribed = true;
+            System.out.println("✅ Cache invalidation channel subscribed: " + invalidationChannel);
+        } catch (Exception e) {
+            System.err.println("⚠️ Cache invalidation subscribe failed: " + e.getMessage());
+            try {
+                listenerContainer.removeMessageListener(this);
+            } catch (Exception ignored) {
+                // 连接不可用时忽略
+            }
+        }
+    }
     
     /**
      * 获取缓存
      */
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> clazz) {
         try {
-            Object value = redisTemplate.opsForValue().get(PREFIX + key);
+            Object value = localCache != null ? localCache.getIfPresent(key) : null;
+            boolean fromLocal = value != null;
+            if (value == null) {
+                value = redisTemplate.opsForValue().get(PREFIX + key);
+            }
             if (value == null) {
                 return null;
             }
+            T result;
             if (clazz.isInstance(value)) {
-                return clazz.cast(value);
+                result = clazz.cast(value);
+            } else if (value instanceof String) {
+                result = objectMapper.readValue((String) value, clazz);
+            } else {
+                result = objectMapper.convertValue(value, clazz);
             }
-            if (value instanceof String) {
-                return objectMapper.readValue((String) value, clazz);
+            // 保存转换后的对象，后续命中无需再次反序列化
+            if (localCache != null && (!fromLocal || result != value)) {
+                localCache.put(key, result);
             }
-            return objectMapper.convertValue(value, clazz);
+            return result;
         } catch (Exception e) {
             return null;
         }
@@ -52,6 +194,12 @@ public class CacheService {
         } else {
             redisTemplate.opsForValue().set(PREFIX + key, value);
         }
+        if (localCache != null) {
+            long localTtl = ttl != null && ttl > 0 ? Math.min(ttl, localExpireAfterWrite) : localExpireAfterWrite;
+            localCache.policy().expireVariably().ifPresent(policy ->
+                policy.put(key, value, Duration.ofSeconds(localTtl)));
+            publishInvalidation(key);
+        }
     }
     
     /**
@@ -59,6 +207,62 @@ public class CacheService {
      */
     public void delete(String key) {
         redisTemplate.delete(PREFIX + key);
+        if (localCache != null) {
+            localCache.invalidate(key);
+            publishInvalidation(key);
+        }
+    }
+    
+    /**
+     * 通知其他实例清除本地缓存，消息格式：instanceId|key
+     */
+    private void publishInvalidation(String key) {
+        try {
+            redisTemplate.convertAndSend(invalidationChannel, instanceId + "|" + key);
+            invalidationsSent.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("⚠️ Cache invalidation publish failed: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (localCache == null || !(body instanceof String)) {
+            return;
+        }
+        String payload = (String) body;
+        int separator = payload.indexOf('|');
+        if (separator < 0 || instanceId.equals(payload.substring(0, separator))) {
+            return;
+        }
+        String key = payload.substring(separator + 1);
+        if (ALL_KEYS.equals(key)) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+        invalidationsReceived.incrementAndGet();
+    }
+    
+    /**
+     * 本地缓存指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("localEnabled", localCache != null);
+        if (localCache != null) {
+            CacheStats stats = localCache.stats();
+            metrics.put("localSize", localCache.estimatedSize());
+            metrics.put("hits", stats.hitCount());
+            metrics.put("misses", stats.missCount());
+            metrics.put("hitRate", stats.hitRate());
+            metrics.put("evictions", stats.evictionCount());
+        }
+        metrics.put("subscribed", subscribed);
+        metrics.put("invalidationsSent", invalidationsSent.get());
+        metrics.put("invalidationsReceived", invalidationsReceived.get());
+        return metrics;
     }
     
     /**
@@ -86,6 +290,39 @@ public class CacheService {
         }
     }
     
+    /**
+     * 设置计数（水位等数值，不经过本地缓存）
+     */
+    public void setCount(String key, long value) {
+        redisTemplate.opsForValue().set(PREFIX + key, value);
+    }
+    
+    /**
+     * 尝试获取分布式锁（SET NX EX），锁的值为本次获取生成的令牌
+     * @return 令牌，未获取到返回 null
+     */
+    public String tryLock(String key, long ttlSeconds) {
+        String token = instanceId + ":" + UUID.randomUUID();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(PREFIX + key, token, ttlSeconds, TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+    
+    /**
+     * 续期锁：仅当锁仍由该令牌持有时重置过期时间（比较和续期在同一脚本中原子执行）
+     * @return 锁已过期或被其他节点持有时返回 false
+     */
+    public boolean renewLock(String key, String token, long ttlSeconds) {
+        Long result = redisTemplate.execute(RENEW_LOCK_SCRIPT, List.of(PREFIX + key), token, ttlSeconds);
+        return result != null && result == 1L;
+    }
+    
+    /**
+     * 释放锁：仅当锁仍由该令牌持有时删除，锁过期后被其他节点获取的不会被误删
+     */
+    public void unlock(String key, String token) {
+        redisTemplate.execute(UNLOCK_SCRIPT, List.of(PREFIX + key), token);
+    }
+    
     /**
      * 添加到 Set
      */
@@ -100,6 +337,26 @@ public class CacheService {
         return redisTemplate.opsForSet().size(PREFIX + key);
     }
     
+    /**
+     * 获取 Set 全部成员
+     */
+    public java.util.Set<String> getSetMembers(String key) {
+        java.util.Set<Object> members = redisTemplate.opsForSet().members(PREFIX + key);
+        java.util.Set<String> result = new java.util.HashSet<>();
+        if (members != null) {
+            members.forEach(member -> result.add(String.valueOf(member)));
+        }
+        return result;
+    }
+    
+    /**
+     * 成员已存在，或 Set 大小未达到 limit 时加入（原子执行），返回成员是否在 Set 中
+     */
+    public boolean addToSetIfBelow(String key, String value, long limit) {
+        Long result = redisTemplate.execute(ADD_IF_BELOW_SCRIPT, List.of(PREFIX + key), value, limit);
+        return result != null && result == 1L;
+    }
+    
     /**
      * HyperLogLog 添加
      */
@@ -114,6 +371,66 @@ public class CacheService {
         return redisTemplate.opsForHyperLogLog().size(PREFIX + key);
     }
     
+    /**
+     * 整体替换 Hash 内容并设置过期时间（秒）
+     */
+    public void replaceHash(String key, Map<String, String> fields, long ttl) {
+        redisTemplate.delete(PREFIX + key);
+        if (!fields.isEmpty()) {
+            redisTemplate.opsForHash().putAll(PREFIX + key, fields);
+            redisTemplate.expire(PREFIX + key, ttl, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * 设置 Hash 字段，并重置整个 Hash 的过期时间（秒）
+     */
+    public void putHash(String key, String field, String value, long ttl) {
+        redisTemplate.opsForHash().put(PREFIX + key, field, value);
+        redisTemplate.expire(PREFIX + key, ttl, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Hash 字段累加
+     */
+    public Long incrementHash(String key, String field, long delta) {
+        return redisTemplate.opsForHash().increment(PREFIX + key, field, delta);
+    }
+    
+    /**
+     * 获取 Hash 全部内容
+     */
+    public Map<Object, Object> getHash(String key) {
+        return redisTemplate.opsForHash().entries(PREFIX + key);
+    }
+    
+    /**
+     * 以当前时间为分数记录成员（节点心跳等）
+     */
+    public void touchMember(String key, String member) {
+        redisTemplate.opsForZSet().add(PREFIX + key, member, System.currentTimeMillis());
+    }
+    
+    /**
+     * 获取指定时间之后活跃的成员，同时移除过期成员
+     */
+    public java.util.Set<String> getRecentMembers(String key, long sinceMillis) {
+        redisTemplate.opsForZSet().removeRangeByScore(PREFIX + key, 0, sinceMillis - 1);
+        java.util.Set<Object> members = redisTemplate.opsForZSet().rangeByScore(PREFIX + key, sinceMillis, Double.MAX_VALUE);
+        java.util.Set<String> result = new java.util.HashSet<>();
+        if (members != null) {
+            members.forEach(member -> result.add(String.valueOf(member)));
+        }
+        return result;
+    }
+    
+    /**
+     * 本实例标识
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+    
     /**
      * 设置过期时间（到明天凌晨）
      */
@@ -162,37 +479,73 @@ public class CacheService {
         set("error:stats:" + projectId, data, ttl);
     }
     
-    // 今日错误计数
-    public Long incrTodayErrorCount(String projectId) {
+    // 今日错误计数（本地累加，定时批量写入 Redis）
+    public void incrTodayErrorCount(String projectId) {
         String key = "error:today:" + projectId + ":" + getTodayKey();
-        Long count = increment(key);
-        expireAtTomorrow(key);
-        return count;
+        realtimeCounters.increment(PREFIX + key, tomorrow());
     }
     
     public Long getTodayErrorCount(String projectId) {
         String key = "error:today:" + projectId + ":" + getTodayKey();
-        return getCount(key);
+        return getCount(key) + realtimeCounters.pending(PREFIX + key);
     }
     
-    // 今日 PV 计数
-    public Long incrTodayPV(String projectId) {
+    // 今日 PV 计数（本地累加，定时批量写入 Redis）
+    public void incrTodayPV(String projectId) {
         String key = "pv:today:" + projectId + ":" + getTodayKey();
-        Long count = increment(key);
-        expireAtTomorrow(key);
-        return count;
+        realtimeCounters.increment(PREFIX + key, tomorrow());
     }
     
     public Long getTodayPV(String projectId) {
         String key = "pv:today:" + projectId + ":" + getTodayKey();
-        return getCount(key);
+        return getCount(key) + realtimeCounters.pending(PREFIX + key);
+    }
+    
+    /**
+     * 一次 pipeline 读取今日错误数、PV、UV（GET / GET / PFCOUNT），并加上本地尚未写入的增量
+     */
+    public Map<String, Long> getTodayCounters(String projectId) {
+        String today = getTodayKey();
+        String errorKey = PREFIX + "error:today:" + projectId + ":" + today;
+        String pvKey = PREFIX + "pv:today:" + projectId + ":" + today;
+        String uvKey = PREFIX + "uv:today:" + projectId + ":" + today;
+        
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(errorKey.getBytes(StandardCharsets.UTF_8));
+            connection.stringCommands().get(pvKey.getBytes(StandardCharsets.UTF_8));
+            connection.hyperLogLogCommands().pfCount(uvKey.getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        
+        Map<String, Long> counters = new HashMap<>();
+        counters.put("errors", toLong(results.get(0)) + realtimeCounters.pending(errorKey));
+        counters.put("pv", toLong(results.get(1)) + realtimeCounters.pending(pvKey));
+        counters.put("uv", toLong(results.get(2)));
+        return counters;
     }
     
-    // 今日 UV（HyperLogLog）
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+    
+    // 今日 UV（HyperLogLog，本地缓冲后批量 PFADD，读取有最多一个刷写周期的延迟）
     public void addTodayUV(String projectId, String sessionId) {
         String key = "uv:today:" + projectId + ":" + getTodayKey();
-        pfAdd(key, sessionId);
-        expireAtTomorrow(key);
+        realtimeCounters.pfAdd(PREFIX + key, sessionId, tomorrow());
+    }
+    
+    private java.time.Instant tomorrow() {
+        return LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
     }
     
     public Long getTodayUV(String projectId) {
@@ -200,27 +553,174 @@ public class CacheService {
         return pfCount(key);
     }
     
-    // 错误受影响用户 Set
-    public Long addToUserSet(String errorId, String userId) {
-        String key = "error:users:" + errorId;
-        Long result = addToSet(key, userId);
-        expire(key, 30); // 30 天过期
-        return result;
+    // 错误受影响用户：按天的 HyperLogLog，可合并任意日期范围；errorKey 为 projectId:errorHash
+    public void addErrorUsers(String errorKey, Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        String[] values = userIds.toArray(new String[0]);
+        String dayKey = "error:users:" + errorKey + ":" + getTodayKey();
+        redisTemplate.opsForHyperLogLog().add(PREFIX + dayKey, (Object[]) values);
+        expire(dayKey, errorUsersRetentionDays);
+        
+        // 小规模错误可选精确计数，达到上限后不再写入，改用 HyperLogLog 估算
+        if (errorUsersExactLimit > 0) {
+            String exactKey = "error:users:exact:" + errorKey;
+            Long size = getSetSize(exactKey);
+            if (size == null || size < errorUsersExactLimit) {
+                redisTemplate.opsForSet().add(PREFIX + exactKey, (Object[]) values);
+                expire(exactKey, errorUsersRetentionDays);
+            }
+        }
+    }
+    
+    /**
+     * 最近 days 天的受影响用户数
+     */
+    public Long countErrorUsers(String errorKey, int days) {
+        LocalDate today = LocalDate.now();
+        if (errorUsersExactLimit > 0 && days >= errorUsersRetentionDays) {
+            Long exact = getSetSize("error:users:exact:" + errorKey);
+            if (exact != null && exact > 0 && exact < errorUsersExactLimit) {
+                return exact;
+            }
+        }
+        return countErrorUsers(errorKey, today.minusDays(days - 1L), today);
+    }
+    
+    /**
+     * 指定日期范围内的受影响用户数（合并各天的 HyperLogLog）
+     */
+    public Long countErrorUsers(String errorKey, LocalDate from, LocalDate to) {
+        List<String> keys = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            keys.add(PREFIX + "error:users:" + errorKey + ":" + day);
+        }
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        return redisTemplate.opsForHyperLogLog().size(keys.toArray(new String[0]));
     }
     
-    public Long getUserSetSize(String errorId) {
-        String key = "error:users:" + errorId;
-        return getSetSize(key);
+    public int getErrorUsersRetentionDays() {
+        return errorUsersRetentionDays;
     }
     
     /**
      * 清除指定项目的所有缓存
+     * 使用 SCAN 增量遍历（不阻塞 Redis），按各类 key 中 projectId 所在的分段精确匹配，
+     * 分批 UNLINK 删除，并按 cache.purge.max-keys-per-second 限制扫描速度
+     * @return 清理统计：scanned / deleted / durationMs
      */
-    public void clearAllCache(String projectId) {
-        // 获取所有匹配的 key
-        java.util.Set<String> keys = redisTemplate.keys(PREFIX + "*:" + projectId + "*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
+    public Map<String, Object> clearAllCache(String projectId) {
+        long start = System.currentTimeMillis();
+        
+        // 先丢弃本地未写入的计数，避免清理后又被写回
+        realtimeCounters.discard(key -> belongsToProject(key, projectId));
+        
+        long scanned = 0;
+        long deleted = 0;
+        int batches = 0;
+        List<String> batch = new ArrayList<>(purgeBatchSize);
+        ScanOptions options = ScanOptions.scanOptions().match(PREFIX + "*").count(purgeBatchSize).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                scanned++;
+                if (belongsToProject(key, projectId)) {
+                    batch.add(key);
+                }
+                if (batch.size() >= purgeBatchSize) {
+                    deleted += unlink(batch);
+                    batch.clear();
+                }
+                if (scanned % purgeBatchSize == 0) {
+                    batches++;
+                    if (batches % 20 == 0) {
+                        System.out.println("🧹 Cache purge progress: project=" + projectId + ", scanned=" + scanned + ", deleted=" + deleted);
+                    }
+                    throttle(start, scanned);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlink(batch);
+        }
+        
+        if (localCache != null) {
+            localCache.invalidateAll();
+            publishInvalidation(ALL_KEYS);
+        }
+        
+        long duration = System.currentTimeMillis() - start;
+        System.out.println("✅ Cache purge completed: project=" + projectId + ", scanned=" + scanned + ", deleted=" + deleted + ", " + duration + "ms");
+        Map<String, Object> result = new HashMap<>();
+        result.put("scanned", scanned);
+        result.put("deleted", deleted);
+        result.put("durationMs", duration);
+        return result;
+    }
+    
+    /**
+     * key 去掉前缀后按 ":" 分段，只比较该类 key 中 projectId 所在的分段，
+     * 日期、错误指纹等其他分段即使与 projectId 相同也不会误删
+     */
+    private boolean belongsToProject(String key, String projectId) {
+        String name = key.startsWith(PREFIX) ? key.substring(PREFIX.length()) : key;
+        String[] segments = name.split(":");
+        int index = projectSegment(segments);
+        return index >= 0 && index < segments.length && segments[index].equals(projectId);
+    }
+    
+    /**
+     * 各类项目级 key 中 projectId 的位置，非项目级 key（projects:list、快照、水位线等）返回 -1
+     * dashboard:{projectId}
+     * stats:version:{module}:{projectId}[:...]
+     * {module}:stats:{projectId}[:...]
+     * error|pv|uv:today:{projectId}:{date}
+     * error:users:{projectId}:{errorHash}:{date}
+     * error:users:exact:{projectId}:{errorHash}
+     * tags:{projectId}:{tag}
+     */
+    private static int projectSegment(String[] segments) {
+        if (segments.length < 2) {
+            return -1;
+        }
+        if ("dashboard".equals(segments[0]) || "tags".equals(segments[0])) {
+            return 1;
+        }
+        if ("stats".equals(segments[0]) && "version".equals(segments[1])) {
+            return 3;
+        }
+        if ("stats".equals(segments[1]) || "today".equals(segments[1])) {
+            return 2;
+        }
+        if ("error".equals(segments[0]) && "users".equals(segments[1])) {
+            return segments.length > 2 && "exact".equals(segments[2]) ? 3 : 2;
+        }
+        return -1;
+    }
+    
+    private long unlink(List<String> keys) {
+        Long count = redisTemplate.unlink(keys);
+        return count != null ? count : 0L;
+    }
+    
+    /**
+     * 扫描速度超过限制时休眠
+     */
+    private void throttle(long start, long scanned) {
+        if (purgeMaxKeysPerSecond <= 0) {
+            return;
+        }
+        long expected = scanned * 1000 / purgeMaxKeysPerSecond;
+        long elapsed = System.currentTimeMillis() - start;
+        if (expected > elapsed) {
+            try {
+                Thread.sleep(expected - elapsed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
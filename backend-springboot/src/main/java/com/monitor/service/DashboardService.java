@@ -1,81 +1,68 @@
 package com.monitor.service;
 
+import com.monitor.config.DashboardConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Dashboard 服务
+ * 各数据源并行获取，每个数据源有独立的超时；超时或失败的数据源使用上次成功的结果（stale），
+ * 没有历史结果时返回零值（missing），响应中的 sections 标记各部分的状态。
+ * 数据源调用查询失败时抛出异常的接口（loadStats），不使用各模块接口兜底的零值结果
  */
 @Service
 @RequiredArgsConstructor
 public class DashboardService {
     
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_STALE = "stale";
+    public static final String STATUS_MISSING = "missing";
+    
     private final ErrorService errorService;
     private final PerformanceService performanceService;
     private final BehaviorService behaviorService;
     private final ApiMonitorService apiMonitorService;
     private final CacheService cacheService;
+    private final StatsCache statsCache;
+    private final DashboardConfig dashboardConfig;
+    
+    /**
+     * 各数据源最近一次成功的结果，key：projectId:source
+     */
+    private final ConcurrentHashMap<String, Map<String, Object>> lastGood = new ConcurrentHashMap<>();
+    
+    private ExecutorService executor;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, dashboardConfig.getThreads()), r -> {
+            Thread thread = new Thread(r, "dashboard-fanout-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
     
     /**
      * 获取 Dashboard 概览数据
      */
     public Map<String, Object> getOverview(String projectId) {
-        // 尝试从缓存获取
-        Map<String, Object> cached = cacheService.getDashboard(projectId, Map.class);
-        if (cached != null) {
-            return cached;
-        }
-        
         try {
-            // 并行获取各模块数据
-            Map<String, Object> errorStats = errorService.getStats(projectId);
-            Map<String, Object> performanceStats = performanceService.getStats(projectId);
-            Map<String, Object> behaviorStats = behaviorService.getStats(projectId);
-            Map<String, Object> apiStats = apiMonitorService.getStats(projectId);
-            
-            Long todayErrorCount = cacheService.getTodayErrorCount(projectId);
-            Long todayPV = cacheService.getTodayPV(projectId);
-            Long todayUV = cacheService.getTodayUV(projectId);
-            
-            Map<String, Object> overview = new HashMap<>();
-            
-            // 错误统计
-            Map<String, Object> errors = new HashMap<>();
-            errors.put("today", todayErrorCount);
-            errors.put("yesterday", 0L); // TODO: 从时间趋势获取
-            errors.put("last7Days", errorStats.getOrDefault("total", 0L));
-            errors.put("trend", 0.0);
-            overview.put("errors", errors);
-            
-            // 性能统计
-            Map<String, Object> performance = new HashMap<>();
-            performance.put("avgLoadTime", performanceStats.getOrDefault("avgLoadTime", 0L));
-            performance.put("avgFCP", performanceStats.getOrDefault("avgFCP", 0L));
-            performance.put("avgLCP", performanceStats.getOrDefault("avgLCP", 0L));
-            overview.put("performance", performance);
-            
-            // 行为统计
-            Map<String, Object> behavior = new HashMap<>();
-            behavior.put("todayPV", todayPV);
-            behavior.put("todayUV", todayUV);
-            behavior.put("totalPV", behaviorStats.getOrDefault("pv", 0L));
-            behavior.put("totalUV", behaviorStats.getOrDefault("uv", 0L));
-            overview.put("behavior", behavior);
-            
-            // API 统计
-            Map<String, Object> api = new HashMap<>();
-            api.put("successRate", apiStats.getOrDefault("successRate", 100.0));
-            api.put("total", apiStats.getOrDefault("total", 0L));
-            api.put("avgResponseTime", apiStats.getOrDefault("avgResponseTime", 0L));
-            overview.put("api", api);
-            
-            // 缓存结果
-            cacheService.setDashboard(projectId, overview, 30L);
-            
-            return overview;
+            return statsCache.get(StatsCache.MODULE_DASHBOARD, projectId, 30L, () -> computeOverview(projectId));
         } catch (Exception e) {
             System.err.println("Dashboard overview failed: " + e.getMessage());
             Map<String, Object> overview = new HashMap<>();
@@ -83,8 +70,109 @@ public class DashboardService {
             overview.put("performance", Map.of("avgLoadTime", 0L, "avgFCP", 0L, "avgLCP", 0L));
             overview.put("behavior", Map.of("todayPV", 0L, "todayUV", 0L, "totalPV", 0L, "totalUV", 0L));
             overview.put("api", Map.of("successRate", 100.0, "total", 0L, "avgResponseTime", 0L));
+            overview.put("partial", true);
             return overview;
         }
     }
+    
+    private Map<String, Object> computeOverview(String projectId) {
+        long start = System.currentTimeMillis();
+        
+        // 并行获取各模块数据，整体耗时取决于最慢的数据源
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new LinkedHashMap<>();
+        futures.put("errors", fetch(() -> errorService.loadStats(projectId)));
+        futures.put("performance", fetch(() -> performanceService.loadStats(projectId, InfluxDBService.DEFAULT_RANGE)));
+        futures.put("behavior", fetch(() -> behaviorService.getStats(projectId)));
+        // 概览只使用滑动窗口内的接口统计，不需要 7 天趋势
+        futures.put("api", fetch(() -> apiMonitorService.getWindowStats(projectId)));
+        futures.put("counters", fetch(() -> new HashMap<>(cacheService.getTodayCounters(projectId))));
+        
+        Map<String, String> sections = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> results = new HashMap<>();
+        futures.forEach((source, future) -> results.put(source, await(projectId, source, future, start, sections)));
+        
+        Map<String, Object> errorStats = results.get("errors");
+        Map<String, Object> performanceStats = results.get("performance");
+        Map<String, Object> behaviorStats = results.get("behavior");
+        Map<String, Object> apiStats = results.get("api");
+        Map<String, Object> counters = results.get("counters");
+        
+        Map<String, Object> overview = new HashMap<>();
+        
+        // 错误统计
+        Map<String, Object> errors = new HashMap<>();
+        errors.put("today", counters.getOrDefault("errors", 0L));
+        errors.put("yesterday", 0L); // TODO: 从时间趋势获取
+        errors.put("last7Days", errorStats.getOrDefault("total", 0L));
+        errors.put("trend", 0.0);
+        overview.put("errors", errors);
+        
+        // 性能统计
+        Map<String, Object> performance = new HashMap<>();
+        performance.put("avgLoadTime", performanceStats.getOrDefault("avgLoadTime", 0L));
+        performance.put("avgFCP", performanceStats.getOrDefault("avgFCP", 0L));
+        performance.put("avgLCP", performanceStats.getOrDefault("avgLCP", 0L));
+        overview.put("performance", performance);
+        
+        // 行为统计
+        Map<String, Object> behavior = new HashMap<>();
+        behavior.put("todayPV", counters.getOrDefault("pv", 0L));
+        behavior.put("todayUV", counters.getOrDefault("uv", 0L));
+        behavior.put("totalPV", behaviorStats.getOrDefault("pv", 0L));
+        behavior.put("totalUV", behaviorStats.getOrDefault("uv", 0L));
+        overview.put("behavior", behavior);
+        
+        // API 统计
+        Map<String, Object> api = new HashMap<>();
+        api.put("successRate", apiStats.getOrDefault("successRate", 100.0));
+        api.put("total", apiStats.getOrDefault("total", 0L));
+        api.put("avgResponseTime", apiStats.getOrDefault("avgResponseTime", 0L));
+        overview.put("api", api);
+        
+        // 部分数据源不可用时标记为 partial，统计缓存不会保存该结果
+        overview.put("sections", sections);
+        overview.put("partial", sections.values().stream().anyMatch(status -> !STATUS_OK.equals(status)));
+        overview.put("elapsedMs", System.currentTimeMillis() - start);
+        return overview;
+    }
+    
+    private CompletableFuture<Map<String, Object>> fetch(Supplier<Map<String, Object>> loader) {
+        return CompletableFuture.supplyAsync(loader, executor);
+    }
+    
+    /**
+     * 等待数据源结果，超时从开始并行获取时计算
+     */
+    private Map<String, Object> await(String projectId, String source, CompletableFuture<Map<String, Object>> future,
+                                      long start, Map<String, String> sections) {
+        String key = projectId + ":" + source;
+        long timeout = dashboardConfig.getTimeouts().getOrDefault(source, dashboardConfig.getTimeout());
+        long remaining = Math.max(0, start + timeout - System.currentTimeMillis());
+        try {
+            Map<String, Object> data = future.get(remaining, TimeUnit.MILLISECONDS);
+            if (data != null) {
+                lastGood.put(key, data);
+                sections.put(source, STATUS_OK);
+                return data;
+            }
+        } catch (TimeoutException e) {
+            System.err.println("⚠️ Dashboard source timed out after " + timeout + "ms: " + source);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("⚠️ Dashboard source failed: " + source + " - " + cause.getMessage());
+        }
+        
+        Map<String, Object> previous = lastGood.get(key);
+        sections.put(source, previous != null ? STATUS_STALE : STATUS_MISSING);
+        return previous != null ? previous : new HashMap<>();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
 }
-
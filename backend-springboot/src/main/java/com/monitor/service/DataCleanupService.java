@@ -1,15 +1,23 @@
 package com.monitor.service;
 
+import com.monitor.entity.ErrorLog;
 import com.monitor.repository.ErrorLogRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * 数据清理服务
@@ -22,51 +30,149 @@ public class DataCleanupService {
     private final InfluxDBService influxDBService;
     private final CacheService cacheService;
     private final ElasticsearchService elasticsearchService;
+    private final ErrorAggregator errorAggregator;
+    private final TagCardinalityGovernor tagGovernor;
+    private final ApiLatencyStats apiLatencyStats;
+    private final PerformanceSketches performanceSketches;
     private final MongoTemplate mongoTemplate;
     
+    private final ProjectService projectService;
+    
+    @Value("${retention.enabled:true}")
+    private boolean retentionEnabled;
+    
+    @Value("${retention.days:30}")
+    private int retentionDays;
+    
+    @Value("${default-project-id:001}")
+    private String defaultProjectId;
+    
     /**
      * 清除所有监控数据
+     * 各存储分别清理，一个存储失败不影响其他存储
+     * @return 各存储的清理结果（success，失败时附带 error）
      */
-    public void clearAllData(String projectId) {
-        // 1. 清除 MongoDB 中的错误数据
-        Query query = new Query(Criteria.where("projectId").is(projectId));
-        mongoTemplate.remove(query, "errorLog");
+    public Map<String, Object> clearAllData(String projectId) {
+        Map<String, Object> result = new HashMap<>();
+        
+        // 1. 清除 MongoDB 中的错误数据（先丢弃尚未写入的聚合结果）
+        cleanStore(result, "mongodb", projectId, () -> {
+            errorAggregator.discard(projectId);
+            Query query = new Query(Criteria.where("projectId").is(projectId));
+            return Map.of("deleted", mongoTemplate.remove(query, ErrorLog.class).getDeletedCount());
+        });
         
         // 2. 清除 InfluxDB 中的数据
-        influxDBService.clearAllData(projectId);
+        cleanStore(result, "influxdb", projectId, () -> influxDBService.clearAllData(projectId));
         
-        // 3. 清除 Redis 中的缓存和计数
-        cacheService.clearAllCache(projectId);
+        // 3. 清除 Redis 中的缓存和计数（包括共享的标签取值，本地副本一并丢弃），
+        //    以及内存中的接口延迟统计和性能分位数草图（其他节点在下次快照同步时丢弃）
+        cleanStore(result, "redis", projectId, () -> {
+            tagGovernor.discard(projectId);
+            apiLatencyStats.discard(projectId);
+            performanceSketches.discard(projectId);
+            return cacheService.clearAllCache(projectId);
+        });
         
         // 4. 清除 Elasticsearch 中的监控日志
-        elasticsearchService.clearAllData(projectId);
+        cleanStore(result, "elasticsearch", projectId, () -> {
+            elasticsearchService.clearAllData(projectId);
+            return Map.of();
+        });
+        
+        return result;
+    }
+    
+    /**
+     * 定时执行数据保留：删除所有项目中超过保留天数的数据
+     */
+    @Scheduled(cron = "${retention.cron:0 30 3 * * *}")
+    public void enforceRetention() {
+        if (!retentionEnabled) {
+            return;
+        }
+        try {
+            // bucket 级保留策略对所有项目生效，设置后仍按项目删除以支持更短的保留天数
+            influxDBService.applyBucketRetention();
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to apply InfluxDB bucket retention: " + e.getMessage());
+        }
+        // Elasticsearch 按天分索引，过期数据整索引删除，无需逐项目 deleteByQuery
+        elasticsearchService.deleteExpiredIndices(retentionDays);
+        
+        Set<String> projectIds = new LinkedHashSet<>();
+        projectIds.add(defaultProjectId);
+        try {
+            projectService.findAll().forEach(project -> projectIds.add(project.getProjectId()));
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to list projects for retention: " + e.getMessage());
+        }
+        for (String projectId : projectIds) {
+            deleteOldData(projectId, retentionDays, false);
+        }
     }
     
     /**
      * 删除超过指定天数的数据（默认30天）
+     * @return 各存储的删除结果
      */
-    public void deleteOldData(String projectId, int days) {
+    public Map<String, Object> deleteOldData(String projectId, int days) {
+        return deleteOldData(projectId, days, true);
+    }
+    
+    private Map<String, Object> deleteOldData(String projectId, int days, boolean elasticsearch) {
         System.out.println("🧹 Starting cleanup: deleting data older than " + days + " days for project: " + projectId);
+        Map<String, Object> result = new HashMap<>();
         
-        try {
-            // 1. 删除 MongoDB 中超过指定天数的错误数据
+        // 1. 删除 MongoDB 中超过指定天数未再发生的错误（按最后发生时间）
+        cleanStore(result, "mongodb", projectId, () -> {
             Date cutoffDate = Date.from(Instant.now().minus(days, ChronoUnit.DAYS));
             Query query = new Query(Criteria.where("projectId").is(projectId)
-                .and("timestamp").lt(cutoffDate));
-            mongoTemplate.remove(query, "errorLog");
-            
-            // 2. 删除 InfluxDB 中超过指定天数的数据
-            influxDBService.deleteOldData(projectId, days);
-            
-            // 3. 删除 Elasticsearch 中超过指定天数的监控日志
-            elasticsearchService.deleteOldData(projectId, days);
-            
-            // Redis 缓存会自动过期，不需要手动删除
-            
-            System.out.println("✅ Cleanup completed: deleted data older than " + days + " days");
+                .and("lastSeen").lt(cutoffDate));
+            return Map.of("deleted", mongoTemplate.remove(query, ErrorLog.class).getDeletedCount());
+        });
+        
+        // 2. 删除 InfluxDB 中超过指定天数的数据
+        cleanStore(result, "influxdb", projectId, () -> influxDBService.deleteOldData(projectId, days));
+        
+        // 3. 删除 Elasticsearch 中超过指定天数的监控日志（定时保留已按索引删除）
+        if (elasticsearch) {
+            cleanStore(result, "elasticsearch", projectId, () -> {
+                elasticsearchService.deleteOldData(projectId, days);
+                return Map.of();
+            });
+        }
+        
+        // Redis 缓存会自动过期，不需要手动删除
+        
+        if (allSucceeded(result)) {
+            System.out.println("✅ Cleanup completed: deleted data older than " + days + " days " + result);
+        } else {
+            System.err.println("⚠️ Cleanup finished with errors: " + result);
+        }
+        return result;
+    }
+    
+    /**
+     * 清理单个存储，失败时记录错误并继续清理其他存储
+     */
+    private void cleanStore(Map<String, Object> result, String store, String projectId, Supplier<Map<String, Object>> action) {
+        try {
+            Map<String, Object> outcome = new HashMap<>(action.get());
+            outcome.put("success", true);
+            result.put(store, outcome);
         } catch (Exception e) {
-            System.err.println("❌ Cleanup failed: " + (e.getMessage() != null ? e.getMessage() : "未知错误"));
+            String message = e.getMessage() != null ? e.getMessage() : "未知错误";
+            System.err.println("❌ Cleanup of " + store + " failed for project " + projectId + ": " + message);
+            result.put(store, Map.of("success", false, "error", message));
         }
     }
+    
+    /**
+     * 是否所有存储都已清理成功
+     */
+    public static boolean allSucceeded(Map<String, Object> result) {
+        return result.values().stream()
+            .allMatch(outcome -> outcome instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get("success")));
+    }
 }
-
@@ -1,22 +1,60 @@
 package com.monitor.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch._types.Bytes;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.DateHistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.FieldDateMath;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.mapping.DynamicMapping;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
-import co.elastic.clients.elasticsearch.core.IndexRequest;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import co.elastic.clients.elasticsearch.cat.indices.IndicesRecord;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.search.HighlighterEncoder;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monitor.config.ElasticsearchConfig;
+import com.monitor.config.SpoolConfig;
+import com.monitor.util.DiskSpool;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Elasticsearch 服务
@@ -29,11 +67,74 @@ public class ElasticsearchService {
     @Autowired(required = false)
     private ElasticsearchClient client;
     
-    private static final String INDEX_NAME = "monitor-logs";
+    private final ElasticsearchConfig elasticsearchConfig;
+    private final SpoolConfig spoolConfig;
+    private final StatsCache statsCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /**
+     * 旧版单索引，仍参与查询，不再写入
+     */
+    private static final String LEGACY_INDEX = "monitor-logs";
+    
+    /**
+     * 映射中的顶层字段，其余字段只保存在不索引的 rawData 中
+     */
+    private static final Set<String> MAPPED_FIELDS = Set.of(
+        "projectId", "eventId", "type", "userId", "sessionId", "url", "path", "message", "stack",
+        "timestamp", "@timestamp", "userAgent", "errorType", "errorMessage", "loadTime",
+        "fcp", "lcp", "fid", "cls", "behaviorType", "method", "status", "responseTime"
+    );
+    
+    /**
+     * 关键字搜索的字段及权重
+     */
+    private static final List<String> KEYWORD_FIELDS = List.of(
+        "message^3", "message.prefix", "errorMessage^3", "errorMessage.prefix", "url^2", "url.prefix", "stack"
+    );
+    
+    private static final List<String> HIGHLIGHT_FIELDS = List.of(
+        "message", "message.prefix", "errorMessage", "errorMessage.prefix", "url", "url.prefix", "stack"
+    );
+    
+    private static final DateTimeFormatter INDEX_DATE = DateTimeFormatter.ofPattern("yyyy.MM.dd").withZone(ZoneOffset.UTC);
+    
+    /**
+     * 日志文档与翻页游标都按 Map<String, Object> 反序列化
+     */
+    private static final TypeReference<Map<String, Object>> LOG_CURSOR = new TypeReference<>() { };
+    private static final Type LOG_DOCUMENT = LOG_CURSOR.getType();
+    
+    /**
+     * 批量写入器，上下文为该文档已重试的次数
+     */
+    private BulkIngester<Integer> bulkIngester;
+    private ScheduledExecutorService retryExecutor;
+    
+    /**
+     * 磁盘暂存：Elasticsearch 不可用时保存待写入文档
+     */
+    private DiskSpool spool;
+    
+    // 批量写入统计
+    private final AtomicLong indexedDocs = new AtomicLong();
+    private final AtomicLong failedDocs = new AtomicLong();
+    private final AtomicLong retriedDocs = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong spooledDocs = new AtomicLong();
     
     @PostConstruct
     public void init() {
+        if (spoolConfig.isEnabled()) {
+            try {
+                spool = new DiskSpool(Path.of(spoolConfig.getDir(), "elasticsearch"),
+                    spoolConfig.getSegmentSize(), spoolConfig.getMaxBytes());
+            } catch (Exception e) {
+                System.err.println("⚠️ Elasticsearch spool unavailable: " + e.getMessage());
+            }
+        }
         if (client != null) {
+            initBulkIngester();
             try {
                 // 检查连接
                 boolean connected = client.ping().value();
@@ -54,30 +155,51 @@ public class ElasticsearchService {
     }
     
     /**
-     * 确保索引存在
+     * 确保索引模板存在：按天创建的索引自动套用映射和分片设置
      */
     private void ensureIndex() {
         if (client == null) return;
         
+        ElasticsearchConfig.Index options = elasticsearchConfig.getIndex();
         try {
-            boolean exists = client.indices().exists(e -> e.index(INDEX_NAME)).value();
-            if (!exists) {
-                client.indices().create(c -> c
-                    .index(INDEX_NAME)
+            client.indices().putIndexTemplate(t -> t
+                .name(options.getPrefix() + "-template")
+                .indexPatterns(options.getPrefix() + "-*")
+                .priority(100)
+                .template(tt -> tt
+                    .settings(s -> s
+                        .numberOfShards(String.valueOf(options.getShards()))
+                        .numberOfReplicas(String.valueOf(options.getReplicas()))
+                        .codec("best_compression")
+                        // 类型不符的字段值忽略该字段，不拒绝整条日志
+                        .mapping(mp -> mp.ignoreMalformed(true))
+                        // 前缀搜索：索引时生成 2 ~ 15 字符的 edge n-gram，查询时按普通分词
+                        .analysis(a -> a
+                            .filter("prefix_ngram", tf -> tf.definition(d -> d.edgeNgram(e -> e.minGram(2).maxGram(15))))
+                            .analyzer("prefix", an -> an.custom(c -> c.tokenizer("standard").filter("lowercase", "prefix_ngram")))
+                        )
+                    )
+                    // 严格映射：只索引已声明的字段，其余字段由 writeLog 放入 rawData
                     .mappings(m -> m
+                        .dynamic(DynamicMapping.Strict)
                         .properties("projectId", p -> p.keyword(k -> k))
+                        .properties("eventId", p -> p.keyword(k -> k))
                         .properties("type", p -> p.keyword(k -> k))
                         .properties("userId", p -> p.keyword(k -> k))
                         .properties("sessionId", p -> p.keyword(k -> k))
-                        .properties("url", p -> p.text(t -> t.fields("keyword", f -> f.keyword(k -> k))))
-                        .properties("path", p -> p.text(t -> t.fields("keyword", f -> f.keyword(k -> k))))
-                        .properties("message", p -> p.text(t -> t))
-                        .properties("stack", p -> p.text(t -> t))
+                        .properties("url", p -> p.text(t2 -> t2
+                            .fields("keyword", f -> f.keyword(k -> k))
+                            .fields("prefix", f -> f.text(pt -> pt.analyzer("prefix").searchAnalyzer("standard")))))
+                        .properties("path", p -> p.text(t2 -> t2.fields("keyword", f -> f.keyword(k -> k))))
+                        .properties("message", p -> p.text(t2 -> t2
+                            .fields("prefix", f -> f.text(pt -> pt.analyzer("prefix").searchAnalyzer("standard")))))
+                        .properties("stack", p -> p.text(t2 -> t2))
                         .properties("timestamp", p -> p.date(d -> d))
                         .properties("@timestamp", p -> p.date(d -> d))
-                        .properties("userAgent", p -> p.text(t -> t))
+                        .properties("userAgent", p -> p.text(t2 -> t2))
                         .properties("errorType", p -> p.keyword(k -> k))
-                        .properties("errorMessage", p -> p.text(t -> t))
+                        .properties("errorMessage", p -> p.text(t2 -> t2
+                            .fields("prefix", f -> f.text(pt -> pt.analyzer("prefix").searchAnalyzer("standard")))))
                         .properties("loadTime", p -> p.integer(i -> i))
                         .properties("fcp", p -> p.float_(f -> f))
                         .properties("lcp", p -> p.float_(f -> f))
@@ -87,19 +209,238 @@ public class ElasticsearchService {
                         .properties("method", p -> p.keyword(k -> k))
                         .properties("status", p -> p.integer(i -> i))
                         .properties("responseTime", p -> p.integer(i -> i))
+                        // 原始数据只存储在 _source 中，不解析、不索引
+                        .properties("rawData", p -> p.object(o -> o.enabled(false)))
                     )
-                    .settings(s -> s
-                        .numberOfShards("1")
-                        .numberOfReplicas("0")
+                )
+            );
+            System.out.println("✅ Elasticsearch index template ready: " + options.getPrefix() + "-*");
+        } catch (Exception e) {
+            System.err.println("❌ Failed to ensure index template: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 文档所在的天索引（UTC）
+     */
+    private String indexFor(Instant time) {
+        return elasticsearchConfig.getIndex().getPrefix() + "-" + INDEX_DATE.format(time);
+    }
+    
+    /**
+     * 与时间范围重叠的索引：逐天列出，范围过大时使用通配符；同时包含旧版单索引
+     */
+    private List<String> indicesFor(Instant start, Instant end) {
+        ElasticsearchConfig.Index options = elasticsearchConfig.getIndex();
+        List<String> indices = new ArrayList<>();
+        indices.add(LEGACY_INDEX);
+        if (start == null || end == null || ChronoUnit.DAYS.between(start, end) > options.getMaxSearchDays()) {
+            indices.add(options.getPrefix() + "-*");
+            return indices;
+        }
+        LocalDate day = start.atZone(ZoneOffset.UTC).toLocalDate();
+        LocalDate last = end.atZone(ZoneOffset.UTC).toLocalDate();
+        while (!day.isAfter(last)) {
+            indices.add(options.getPrefix() + "-" + INDEX_DATE.format(day));
+            day = day.plusDays(1);
+        }
+        return indices;
+    }
+    
+    private static Instant parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 初始化批量写入器
+     * 按文档数、字节数、时间间隔任一条件触发 bulk 请求
+     */
+    private void initBulkIngester() {
+        ElasticsearchConfig.Bulk options = elasticsearchConfig.getBulk();
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "elasticsearch-bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        bulkIngester = BulkIngester.of(b -> b
+            .client(client)
+            .maxOperations(options.getMaxOperations())
+            .maxSize(options.getMaxSize())
+            .maxConcurrentRequests(options.getMaxConcurrentRequests())
+            .flushInterval(options.getFlushInterval(), TimeUnit.MILLISECONDS)
+            .listener(new BulkListener<Integer>() {
+                @Override
+                public void beforeBulk(long executionId, BulkRequest request, List<Integer> contexts) {
+                }
+                
+                @Override
+                public void afterBulk(long executionId, BulkRequest request, List<Integer> contexts,
+                                      BulkResponse response) {
+                    List<BulkResponseItem> items = response.items();
+                    for (int i = 0; i < items.size(); i++) {
+                        BulkResponseItem item = items.get(i);
+                        if (item.error() == null) {
+                            indexedDocs.incrementAndGet();
+                        } else if (isRetryable(item.status())) {
+                            retry(request.operations().get(i), contexts.get(i), item.error().reason());
+                        } else {
+                            failedDocs.incrementAndGet();
+                            System.err.println("❌ Elasticsearch document rejected: " + item.error().reason());
+                        }
+                    }
+                }
+                
+                @Override
+                public void afterBulk(long executionId, BulkRequest request, List<Integer> contexts,
+                                      Throwable failure) {
+                    failedRequests.incrementAndGet();
+                    for (int i = 0; i < request.operations().size(); i++) {
+                        retry(request.operations().get(i), contexts.get(i), failure.getMessage());
+                    }
+                }
+            })
+        );
+        if (spool != null) {
+            retryExecutor.scheduleWithFixedDelay(this::replay, spoolConfig.getReplayInterval(),
+                spoolConfig.getReplayInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+    
+    /**
+     * 单条文档按指数退避重新加入批量写入器
+     */
+    private void retry(BulkOperation operation, Integer attempts, String reason) {
+        ElasticsearchConfig.Bulk options = elasticsearchConfig.getBulk();
+        int attempt = attempts != null ? attempts : 0;
+        if (attempt >= options.getMaxRetries() || retryExecutor.isShutdown()) {
+            System.err.println("❌ Elasticsearch write error after " + attempt + " retries: " + reason);
+            spool(operation.index().index(), operation.index().id(), operation.index().routing(), operation.index().document());
+            return;
+        }
+        retriedDocs.incrementAndGet();
+        long delay = options.getRetryInterval() * (1L << attempt);
+        retryExecutor.schedule(() -> bulkIngester.add(operation, attempt + 1), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 关闭前刷写缓冲区并等待进行中的 bulk 请求完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (bulkIngester != null) {
+            retryExecutor.shutdown();
+            try {
+                retryExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            bulkIngester.close();
+            System.out.println("✅ Elasticsearch bulk ingester drained: " + indexedDocs.get() + " documents indexed");
+        }
+        if (spool != null) {
+            spool.force();
+        }
+    }
+    
+    /**
+     * 写入磁盘暂存，分配文档 ID 以保证回放幂等
+     */
+    private void spool(String index, String id, String routing, Object document) {
+        try {
+            Map<String, Object> record = new HashMap<>();
+            record.put("index", index);
+            record.put("id", id != null ? id : UUID.randomUUID().toString());
+            record.put("routing", routing);
+            record.put("doc", document);
+            if (spool != null && spool.append(objectMapper.writeValueAsBytes(record))) {
+                spooledDocs.incrementAndGet();
+                return;
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Elasticsearch spool error: " + e.getMessage());
+        }
+        failedDocs.incrementAndGet();
+    }
+    
+    /**
+     * 回放磁盘暂存文档，每次最多回放 replayRate * replayInterval 条
+     * 请求失败或存在可重试的失败项时保留读取位置，等待下次检查
+     */
+    @SuppressWarnings("unchecked")
+    private void replay() {
+        try {
+            if (spool.isEmpty()) {
+                return;
+            }
+            spool.force();
+            int limit = (int) Math.max(1, spoolConfig.getReplayRate() * spoolConfig.getReplayInterval() / 1000);
+            List<byte[]> records = spool.peek(limit);
+            if (records.isEmpty()) {
+                spool.commit(0);
+                return;
+            }
+            
+            List<BulkOperation> operations = new ArrayList<>(records.size());
+            for (byte[] record : records) {
+                Map<String, Object> entry = objectMapper.readValue(record, Map.class);
+                operations.add(BulkOperation.of(op -> op
+                    .index(idx -> idx
+                        .index((String) entry.get("index"))
+                        .id((String) entry.get("id"))
+                        .routing((String) entry.get("routing"))
+                        .document(entry.get("doc"))
                     )
-                );
-                System.out.println("✅ Elasticsearch index created: " + INDEX_NAME);
+                ));
+            }
+            
+            BulkResponse response = client.bulk(b -> b.operations(operations));
+            int indexed = 0;
+            for (BulkResponseItem item : response.items()) {
+                if (item.error() == null) {
+                    indexed++;
+                } else if (isRetryable(item.status())) {
+                    return;
+                } else {
+                    failedDocs.incrementAndGet();
+                }
             }
+            indexedDocs.addAndGet(indexed);
+            spool.commit(records.size());
         } catch (Exception e) {
-            System.err.println("❌ Failed to ensure index: " + e.getMessage());
+            // Elasticsearch 仍不可用，下次再试
         }
     }
     
+    /**
+     * 批量写入统计指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", bulkIngester != null);
+        metrics.put("pendingOperations", bulkIngester != null ? bulkIngester.pendingOperations() : 0);
+        metrics.put("pendingBytes", bulkIngester != null ? bulkIngester.pendingOperationsSize() : 0L);
+        metrics.put("inFlightRequests", bulkIngester != null ? bulkIngester.pendingRequests() : 0);
+        metrics.put("bulkRequests", bulkIngester != null ? bulkIngester.requestCount() : 0L);
+        metrics.put("indexedDocs", indexedDocs.get());
+        metrics.put("retriedDocs", retriedDocs.get());
+        metrics.put("failedDocs", failedDocs.get());
+        metrics.put("failedRequests", failedRequests.get());
+        metrics.put("spooledDocs", spooledDocs.get());
+        metrics.put("spool", spool != null ? spool.getMetrics() : Map.of());
+        return metrics;
+    }
+    
     /**
      * 检查连接状态
      */
@@ -109,27 +450,55 @@ public class ElasticsearchService {
     
     /**
      * 写入日志
+     * 文档进入批量写入器后立即返回，由后台按批次提交
      */
     public void writeLog(Map<String, Object> data) {
+        Instant now = Instant.now();
+        Map<String, Object> doc = buildDocument(data, now);
+        // 按天写入索引，按项目路由到固定分片
+        String index = indexFor(now);
+        String routing = data.get("projectId") != null ? String.valueOf(data.get("projectId")) : null;
+        
         if (client == null) {
-            System.out.println("⚠️ Elasticsearch client not available, skipping log write");
+            // 客户端不可用时暂存到磁盘，重启后 Elasticsearch 可用时回放
+            spool(index, null, routing, doc);
             return;
         }
         
         try {
-            Map<String, Object> doc = new HashMap<>(data);
-            doc.put("@timestamp", Instant.now().toString());
-            doc.put("rawData", data); // 保存完整原始数据
-            
-            IndexRequest<Map<String, Object>> request = IndexRequest.of(i -> i
-                .index(INDEX_NAME)
-                .document(doc)
-            );
-            
-            client.index(request);
+            bulkIngester.add(BulkOperation.of(op -> op
+                .index(idx -> idx
+                    .index(index)
+                    .routing(routing)
+                    .document(doc)
+                )
+            ), 0);
         } catch (Exception e) {
             System.err.println("❌ Elasticsearch write error: " + e.getMessage());
+            spool(index, null, routing, doc);
+        }
+    }
+    
+    /**
+     * 构建日志文档：映射字段放在顶层，其余字段（requestData、responseData 等）只放入 rawData，
+     * 不再把整条数据重复保存一份
+     */
+    static Map<String, Object> buildDocument(Map<String, Object> data, Instant now) {
+        Map<String, Object> doc = new HashMap<>();
+        Map<String, Object> rawData = new HashMap<>();
+        data.forEach((key, value) -> {
+            if (MAPPED_FIELDS.contains(key)) {
+                doc.put(key, value);
+            } else {
+                rawData.put(key, value);
+            }
+        });
+        doc.put("@timestamp", now.toString());
+        doc.put("eventId", UUID.randomUUID().toString()); // 游标翻页的排序 tiebreaker
+        if (!rawData.isEmpty()) {
+            doc.put("rawData", rawData);
         }
+        return doc;
     }
     
     /**
@@ -157,14 +526,15 @@ public class ElasticsearchService {
             
             BoolQuery.Builder boolQuery = new BoolQuery.Builder();
             
+            // 精确条件放在 filter 上下文：不参与评分，可被 Elasticsearch 缓存
             // 项目ID过滤
             if (projectId != null && !projectId.isEmpty()) {
-                boolQuery.must(TermQuery.of(t -> t.field("projectId").value(projectId))._toQuery());
+                boolQuery.filter(TermQuery.of(t -> t.field("projectId").value(projectId))._toQuery());
             }
             
             // 用户ID过滤
             if (userId != null && !userId.isEmpty()) {
-                boolQuery.must(TermQuery.of(t -> t.field("userId").value(userId))._toQuery());
+                boolQuery.filter(TermQuery.of(t -> t.field("userId").value(userId))._toQuery());
             }
             
             // 类型过滤（排除性能监控）
@@ -172,7 +542,7 @@ public class ElasticsearchService {
                 if ("performance".equals(type)) {
                     boolQuery.mustNot(TermQuery.of(t -> t.field("type").value("performance"))._toQuery());
                 } else {
-                    boolQuery.must(TermQuery.of(t -> t.field("type").value(type))._toQuery());
+                    boolQuery.filter(TermQuery.of(t -> t.field("type").value(type))._toQuery());
                 }
             } else {
                 // 默认排除性能监控
@@ -187,49 +557,101 @@ public class ElasticsearchService {
             if (endTime != null && !endTime.isEmpty()) {
                 rangeQuery.lte(JsonData.of(endTime));
             }
+            List<String> indices;
             if (startTime != null || endTime != null) {
-                boolQuery.must(rangeQuery.build()._toQuery());
+                boolQuery.filter(rangeQuery.build()._toQuery());
+                Instant start = startTime != null ? parseTime(startTime) : null;
+                Instant end = endTime != null ? parseTime(endTime) : Instant.now();
+                indices = indicesFor(start, end);
             } else {
                 // 默认查询最近7天
                 Instant now = Instant.now();
                 Instant sevenDaysAgo = now.minusSeconds(7 * 24 * 60 * 60);
-                boolQuery.must(RangeQuery.of(r -> r
+                boolQuery.filter(RangeQuery.of(r -> r
                     .field("@timestamp")
                     .gte(JsonData.of(sevenDaysAgo.toString()))
                     .lte(JsonData.of(now.toString()))
                 )._toQuery());
+                indices = indicesFor(sevenDaysAgo, now);
+            }
+            
+            // 关键字：全文匹配消息、错误信息、堆栈和 URL，prefix 子字段支持输入前缀即可命中
+            boolean hasKeyword = keyword != null && !keyword.isBlank();
+            if (hasKeyword) {
+                boolQuery.must(MultiMatchQuery.of(m -> m
+                    .query(keyword.trim())
+                    .fields(KEYWORD_FIELDS)
+                    .type(TextQueryType.MostFields)
+                    .operator(Operator.And)
+                )._toQuery());
             }
             
             Query query = boolQuery.build()._toQuery();
+            // 只查询与时间范围重叠的天索引，指定项目时只查询该项目所在分片
+            String routing = projectId != null && !projectId.isEmpty() ? projectId : null;
             
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                .index(INDEX_NAME)
-                .query(query)
-                .from((page - 1) * pageSize)
-                .size(pageSize)
-                .sort(so -> so.field(f -> f.field("@timestamp").order(co.elastic.clients.elasticsearch._types.SortOrder.Desc)))
-            );
+            // 游标翻页：search_after 上一页最后一条的排序值；首页直接查询索引，确认还有下一页时才打开 point-in-time 固定快照
+            Map<String, Object> cursor = decodeCursor(cursor(params));
+            List<FieldValue> after = cursor != null ? toFieldValues(cursor.get("after")) : null;
+            String pitId = cursor != null ? (String) cursor.get("pit") : null;
             
-            SearchResponse<Map> response = client.search(searchRequest, Map.class);
+            SearchResponse<Map<String, Object>> response;
+            try {
+                response = search(query, indices, routing, pitId, after, page, pageSize, cursor == null, hasKeyword);
+            } catch (Exception e) {
+                if (pitId == null) {
+                    throw e;
+                }
+                // point-in-time 已过期：排序值与快照无关，直接在当前索引上继续翻页
+                pitId = null;
+                response = search(query, indices, routing, null, after, page, pageSize, cursor == null, hasKeyword);
+            }
             
             List<Map<String, Object>> hits = new ArrayList<>();
-            for (Hit<Map> hit : response.hits().hits()) {
+            List<FieldValue> lastSort = null;
+            for (Hit<Map<String, Object>> hit : response.hits().hits()) {
                 Map<String, Object> source = hit.source();
                 if (source != null) {
                     Map<String, Object> hitData = new HashMap<>(source);
+                    // 还原为上报时的完整数据（旧版文档的 rawData 是完整副本，顶层字段优先）
+                    Object rawData = hitData.remove("rawData");
+                    if (rawData instanceof Map<?, ?> raw) {
+                        raw.forEach((key, value) -> hitData.putIfAbsent(String.valueOf(key), value));
+                    }
                     hitData.put("_id", hit.id());
+                    if (hit.highlight() != null && !hit.highlight().isEmpty()) {
+                        hitData.put("_highlight", mergeHighlight(hit.highlight()));
+                    }
                     hits.add(hitData);
                 }
+                lastSort = hit.sort();
             }
             
-            long total = response.hits().total().value();
+            String nextCursor = null;
+            String currentPit = response.pitId() != null ? response.pitId() : pitId;
+            TotalHits total = response.hits().total();
+            boolean hasMore = response.hits().hits().size() >= pageSize && lastSort != null && !lastSort.isEmpty()
+                && (total == null || total.relation() != TotalHitsRelation.Eq || total.value() > (long) page * pageSize);
+            if (hasMore) {
+                if (cursor == null) {
+                    // 后续页按排序值接在首页之后，首页之后新写入的日志时间更晚，不会出现在后续页中
+                    currentPit = openPointInTime(indices, routing);
+                }
+                nextCursor = encodeCursor(currentPit, lastSort);
+            } else {
+                closePointInTime(currentPit);
+            }
             
-            return Map.of(
-                "total", total,
-                "hits", hits,
-                "page", page,
-                "pageSize", pageSize
-            );
+            Map<String, Object> result = new HashMap<>();
+            // 总数只在首页统计，后续页沿用首页的总数
+            if (response.hits().total() != null) {
+                result.put("total", response.hits().total().value());
+            }
+            result.put("hits", hits);
+            result.put("page", page);
+            result.put("pageSize", pageSize);
+            result.put("nextCursor", nextCursor);
+            return result;
         } catch (Exception e) {
             System.err.println("❌ Elasticsearch search error: " + e.getMessage());
             return Map.of(
@@ -241,8 +663,375 @@ public class ElasticsearchService {
         }
     }
     
+    private static String cursor(Map<String, Object> params) {
+        Object value = params.get("cursor");
+        return value != null && !value.toString().isEmpty() ? value.toString() : null;
+    }
+    
     /**
-     * 清除指定项目的所有监控日志
+     * 执行一页查询：按 @timestamp 倒序，eventId 作为 tiebreaker 保证游标位置唯一
+     */
+    private SearchResponse<Map<String, Object>> search(Query query, List<String> indices, String routing, String pitId,
+                                                      List<FieldValue> after, int page, int pageSize, boolean trackTotal,
+                                                      boolean highlight) throws Exception {
+        String keepAlive = elasticsearchConfig.getSearch().getPitKeepAlive();
+        SearchRequest searchRequest = SearchRequest.of(s -> {
+            if (pitId != null) {
+                // point-in-time 查询不能指定索引和路由，二者在打开时已确定
+                s.pit(p -> p.id(pitId).keepAlive(t -> t.time(keepAlive)));
+            } else {
+                s.index(indices)
+                    .ignoreUnavailable(true)
+                    .allowNoIndices(true)
+                    .routing(routing);
+            }
+            if (after != null) {
+                s.searchAfter(after);
+            } else {
+                s.from((page - 1) * pageSize);
+            }
+            if (highlight) {
+                // html 编码转义原文，前端可直接渲染 <em> 标记
+                s.highlight(h -> {
+                    h.encoder(HighlighterEncoder.Html)
+                        .preTags("<em>")
+                        .postTags("</em>")
+                        .fragmentSize(150)
+                        .numberOfFragments(3)
+                        .requireFieldMatch(false);
+                    for (String field : HIGHLIGHT_FIELDS) {
+                        h.fields(field, hf -> hf);
+                    }
+                    return h;
+                });
+            }
+            return s
+                .query(query)
+                .size(pageSize)
+                .trackTotalHits(t -> t.enabled(trackTotal))
+                .sort(so -> so.field(f -> f.field("@timestamp").order(SortOrder.Desc)))
+                .sort(so -> so.field(f -> f.field("eventId").order(SortOrder.Asc).unmappedType(FieldType.Keyword).missing("")));
+        });
+        return client.search(searchRequest, LOG_DOCUMENT);
+    }
+    
+    /**
+     * prefix 子字段的高亮并入主字段，主字段已有高亮时优先使用主字段
+     */
+    private static Map<String, List<String>> mergeHighlight(Map<String, List<String>> highlight) {
+        Map<String, List<String>> merged = new HashMap<>();
+        highlight.forEach((field, fragments) -> {
+            if (!field.endsWith(".prefix")) {
+                merged.put(field, fragments);
+            }
+        });
+        highlight.forEach((field, fragments) -> {
+            if (field.endsWith(".prefix")) {
+                merged.putIfAbsent(field.substring(0, field.length() - ".prefix".length()), fragments);
+            }
+        });
+        return merged;
+    }
+    
+    private String openPointInTime(List<String> indices, String routing) {
+        if (!elasticsearchConfig.getSearch().isPitEnabled()) {
+            return null;
+        }
+        try {
+            return client.openPointInTime(o -> o
+                .index(indices)
+                .ignoreUnavailable(true)
+                .routing(routing)
+                .keepAlive(t -> t.time(elasticsearchConfig.getSearch().getPitKeepAlive()))
+            ).id();
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to open point-in-time, paging without snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void closePointInTime(String pitId) {
+        if (pitId == null) {
+            return;
+        }
+        try {
+            client.closePointInTime(c -> c.id(pitId));
+        } catch (Exception e) {
+            // 过期后由 Elasticsearch 自动释放
+        }
+    }
+    
+    /**
+     * 游标对前端不透明：{pit, after} 的 JSON 经 Base64 URL 编码
+     */
+    private String encodeCursor(String pitId, List<FieldValue> sort) {
+        try {
+            List<Object> after = new ArrayList<>();
+            for (FieldValue value : sort) {
+                after.add(value.isLong() ? (Object) value.longValue() : value._get());
+            }
+            Map<String, Object> cursor = new HashMap<>();
+            cursor.put("pit", pitId);
+            cursor.put("after", after);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to encode log search cursor: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 校验翻页游标：必须是 searchLogs 返回的 nextCursor（含非空的 after 排序值），空游标视为首页
+     */
+    public boolean isValidCursor(String cursor) {
+        try {
+            decodeCursor(cursor == null || cursor.isEmpty() ? null : cursor);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    private Map<String, Object> decodeCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        Map<String, Object> decoded;
+        try {
+            decoded = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), LOG_CURSOR);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        if (decoded == null || !(decoded.get("after") instanceof List<?> after) || after.isEmpty()
+                || (decoded.get("pit") != null && !(decoded.get("pit") instanceof String))) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        return decoded;
+    }
+    
+    private static List<FieldValue> toFieldValues(Object after) {
+        List<FieldValue> values = new ArrayList<>();
+        if (after instanceof List<?> list) {
+            for (Object value : list) {
+                if (value instanceof Number number) {
+                    values.add(FieldValue.of(number.longValue()));
+                } else {
+                    values.add(FieldValue.of(String.valueOf(value)));
+                }
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * 日志统计：按类型计数、事件量时间分布、访问量最高的 URL 和用户，一次 size 为 0 的聚合查询；
+     * 结果按 TTL 缓存，索引大小和文档数取自索引统计
+     * @param range 时间范围：1h / 24h / 7d / 30d
+     */
+    public Map<String, Object> getLogStats(String projectId, String range, int top) {
+        if (!InfluxDBService.isSupportedRange(range)) {
+            range = InfluxDBService.DEFAULT_RANGE;
+        }
+        if (client == null) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("isConnected", false);
+            stats.put("indexExists", false);
+            stats.put("documentCount", 0);
+            return stats;
+        }
+        String queryRange = range;
+        Map<String, Object> stats;
+        try {
+            stats = new HashMap<>(statsCache.get(StatsCache.MODULE_LOG, projectId + ":" + range + ":" + top, 60L,
+                () -> computeLogStats(projectId, queryRange, top)));
+        } catch (Exception e) {
+            System.err.println("❌ Elasticsearch stats query failed: " + e.getMessage());
+            stats = new HashMap<>();
+        }
+        stats.put("isConnected", true);
+        return stats;
+    }
+    
+    private Map<String, Object> computeLogStats(String projectId, String range, int top) {
+        long rangeSeconds = InfluxDBService.durationSeconds(range);
+        Instant end = Instant.now();
+        Instant start = end.minusSeconds(rangeSeconds);
+        // 1 小时内按分钟，1 天内按小时，更长按天
+        String interval = rangeSeconds <= 3600 ? "1m" : rangeSeconds <= 86400 ? "1h" : "1d";
+        
+        Query query = BoolQuery.of(b -> b
+            .filter(TermQuery.of(t -> t.field("projectId").value(projectId))._toQuery())
+            .filter(RangeQuery.of(r -> r
+                .field("@timestamp")
+                .gte(JsonData.of(start.toString()))
+                .lte(JsonData.of(end.toString()))
+            )._toQuery())
+        )._toQuery();
+        
+        SearchResponse<Void> response;
+        try {
+            response = client.search(s -> s
+                .index(indicesFor(start, end))
+                .ignoreUnavailable(true)
+                .allowNoIndices(true)
+                .routing(projectId)
+                .size(0)
+                .trackTotalHits(t -> t.enabled(true))
+                .query(query)
+                .aggregations("types", a -> a.terms(t -> t.field("type").size(20)))
+                .aggregations("volume", a -> a.dateHistogram(d -> d
+                    .field("@timestamp")
+                    .fixedInterval(i -> i.time(interval))
+                    .minDocCount(0)
+                    .extendedBounds(eb -> eb
+                        .min(FieldDateMath.of(m -> m.value((double) start.toEpochMilli())))
+                        .max(FieldDateMath.of(m -> m.value((double) end.toEpochMilli())))
+                    )
+                ))
+                .aggregations("topUrls", a -> a.terms(t -> t.field("url.keyword").size(top)))
+                .aggregations("topUsers", a -> a.terms(t -> t.field("userId").size(top))),
+                Void.class);
+        } catch (Exception e) {
+            // 抛出异常时不写入缓存
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        
+        Map<String, Object> typeCounts = new HashMap<>();
+        for (StringTermsBucket bucket : response.aggregations().get("types").sterms().buckets().array()) {
+            typeCounts.put(bucket.key().stringValue(), bucket.docCount());
+        }
+        List<Map<String, Object>> volume = new ArrayList<>();
+        for (DateHistogramBucket bucket : response.aggregations().get("volume").dateHistogram().buckets().array()) {
+            volume.add(Map.of("time", Instant.ofEpochMilli(bucket.key()).toString(), "count", bucket.docCount()));
+        }
+        
+        Map<String, Object> storage = getStorageStats();
+        long documentCount = 0;
+        long storeBytes = 0;
+        for (Object entry : storage.values()) {
+            if (entry instanceof Map<?, ?> m) {
+                documentCount += ((Number) m.get("documents")).longValue();
+                storeBytes += ((Number) m.get("storeBytes")).longValue();
+            }
+        }
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("range", range);
+        stats.put("interval", interval);
+        stats.put("total", response.hits().total() != null ? response.hits().total().value() : 0L);
+        stats.put("typeCounts", typeCounts);
+        stats.put("volume", volume);
+        stats.put("topUrls", termBuckets(response.aggregations().get("topUrls").sterms(), "url"));
+        stats.put("topUsers", termBuckets(response.aggregations().get("topUsers").sterms(), "userId"));
+        stats.put("indexExists", documentCount > 0);
+        stats.put("documentCount", documentCount);
+        stats.put("storeBytes", storeBytes);
+        stats.put("storage", storage);
+        return stats;
+    }
+    
+    private static List<Map<String, Object>> termBuckets(StringTermsAggregate aggregate, String keyName) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (StringTermsBucket bucket : aggregate.buckets().array()) {
+            list.add(Map.of(keyName, bucket.key().stringValue(), "count", bucket.docCount()));
+        }
+        return list;
+    }
+    
+    /**
+     * 存储统计：旧版单索引与按天索引各自的文档数、主分片存储字节数和每文档字节数
+     */
+    public Map<String, Object> getStorageStats() {
+        if (client == null) {
+            return Map.of("isConnected", false);
+        }
+        String prefix = elasticsearchConfig.getIndex().getPrefix() + "-";
+        long[] legacy = new long[2];
+        long[] daily = new long[3];
+        try {
+            for (IndicesRecord record : client.cat().indices(c -> c
+                    .index(LEGACY_INDEX, prefix + "*")
+                    .bytes(Bytes.Bytes)).valueBody()) {
+                long docs = parseLong(record.docsCount());
+                long bytes = parseLong(record.priStoreSize());
+                if (LEGACY_INDEX.equals(record.index())) {
+                    legacy[0] += docs;
+                    legacy[1] += bytes;
+                } else {
+                    daily[0] += docs;
+                    daily[1] += bytes;
+                    daily[2]++;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to get Elasticsearch storage stats: " + e.getMessage());
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("legacy", storageEntry(legacy[0], legacy[1]));
+        Map<String, Object> dailyStats = storageEntry(daily[0], daily[1]);
+        dailyStats.put("indices", daily[2]);
+        stats.put("daily", dailyStats);
+        return stats;
+    }
+    
+    private static Map<String, Object> storageEntry(long docs, long bytes) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("documents", docs);
+        entry.put("storeBytes", bytes);
+        entry.put("bytesPerDocument", docs > 0 ? bytes / docs : 0);
+        return entry;
+    }
+    
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * 把旧版单索引迁移到按天索引：拆出 rawData 中未映射的字段、补充 eventId 和路由，
+     * 以后台任务执行，返回任务 ID（可通过 Elasticsearch 的 _tasks 接口查看进度）
+     */
+    public Map<String, Object> migrateLegacyIndex() {
+        if (client == null) {
+            return Map.of("success", false, "message", "Elasticsearch 未连接");
+        }
+        String prefix = elasticsearchConfig.getIndex().getPrefix();
+        String script = String.join("\n",
+            "Map raw = ctx._source.remove('rawData');",
+            "Map extra = new HashMap();",
+            "if (raw != null) { for (def e : raw.entrySet()) { if (!params.fields.contains(e.getKey())) { extra.put(e.getKey(), e.getValue()); } } }",
+            "for (String key : new ArrayList(ctx._source.keySet())) { if (!params.fields.contains(key)) { extra.put(key, ctx._source.remove(key)); } }",
+            "if (!extra.isEmpty()) { ctx._source.rawData = extra; }",
+            "if (ctx._source.eventId == null) { ctx._source.eventId = ctx._id; }",
+            "String ts = ctx._source['@timestamp'];",
+            "if (ts != null && ts.length() >= 10) { ctx._index = params.prefix + '-' + ts.substring(0, 10).replace('-', '.'); }",
+            "if (ctx._source.projectId != null) { ctx._routing = ctx._source.projectId.toString(); }"
+        );
+        try {
+            String task = client.reindex(r -> r
+                .source(src -> src.index(LEGACY_INDEX))
+                .dest(d -> d.index(prefix + "-migrated"))
+                .script(sc -> sc.inline(i -> i
+                    .source(script)
+                    .params("fields", JsonData.of(new ArrayList<>(MAPPED_FIELDS)))
+                    .params("prefix", JsonData.of(prefix))
+                ))
+                .conflicts(Conflicts.Proceed)
+                .waitForCompletion(false)
+            ).task();
+            System.out.println("✅ Started Elasticsearch legacy index migration, task: " + task);
+            return Map.of("success", true, "task", task != null ? task : "");
+        } catch (Exception e) {
+            System.err.println("❌ Failed to migrate legacy Elasticsearch index: " + e.getMessage());
+            return Map.of("success", false, "message", e.getMessage() != null ? e.getMessage() : "未知错误");
+        }
+    }
+    
+    /**
+     * 清除指定项目的所有监控日志（后台任务执行，不强制 refresh）
      */
     public void clearAllData(String projectId) {
         if (client == null) {
@@ -252,9 +1041,13 @@ public class ElasticsearchService {
         
         try {
             client.deleteByQuery(d -> d
-                .index(INDEX_NAME)
+                .index(indicesFor(null, null))
+                .ignoreUnavailable(true)
+                .allowNoIndices(true)
+                .routing(projectId)
                 .query(TermQuery.of(t -> t.field("projectId").value(projectId))._toQuery())
-                .refresh(true)
+                .conflicts(Conflicts.Proceed)
+                .waitForCompletion(false)
             );
             System.out.println("✅ Cleared all Elasticsearch data for project: " + projectId);
         } catch (Exception e) {
@@ -263,7 +1056,45 @@ public class ElasticsearchService {
     }
     
     /**
-     * 删除超过指定天数的监控日志
+     * 删除过期的天索引（整个索引删除，不重写段）
+     * @return 删除的索引列表
+     */
+    public Map<String, Object> deleteExpiredIndices(int days) {
+        if (client == null) {
+            return Map.of("skipped", true);
+        }
+        String prefix = elasticsearchConfig.getIndex().getPrefix() + "-";
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(days);
+        List<String> expired = new ArrayList<>();
+        try {
+            for (IndicesRecord record : client.cat().indices(c -> c.index(prefix + "*")).valueBody()) {
+                String index = record.index();
+                if (index == null || !index.startsWith(prefix)) {
+                    continue;
+                }
+                try {
+                    LocalDate day = LocalDate.parse(index.substring(prefix.length()), INDEX_DATE);
+                    if (day.isBefore(cutoff)) {
+                        expired.add(index);
+                    }
+                } catch (Exception e) {
+                    // 非按天命名的索引不处理
+                }
+            }
+            if (!expired.isEmpty()) {
+                client.indices().delete(d -> d.index(expired));
+                System.out.println("✅ Deleted expired Elasticsearch indices: " + expired);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to delete expired Elasticsearch indices: " + e.getMessage());
+        }
+        return Map.of("deletedIndices", expired);
+    }
+    
+    /**
+     * 删除指定项目超过指定天数的监控日志
+     * 时间范围过滤可让 Elasticsearch 跳过不重叠的天索引，后台任务执行，不强制 refresh；
+     * 所有项目统一的保留期由 deleteExpiredIndices 按索引删除
      */
     public void deleteOldData(String projectId, int days) {
         if (client == null) {
@@ -282,9 +1113,13 @@ public class ElasticsearchService {
             )._toQuery());
             
             client.deleteByQuery(d -> d
-                .index(INDEX_NAME)
+                .index(indicesFor(null, null))
+                .ignoreUnavailable(true)
+                .allowNoIndices(true)
+                .routing(projectId)
                 .query(boolQuery.build()._toQuery())
-                .refresh(true)
+                .conflicts(Conflicts.Proceed)
+                .waitForCompletion(false)
             );
             
             System.out.println("✅ Deleted Elasticsearch data older than " + days + " days for project: " + projectId);
@@ -293,4 +1128,3 @@ public class ElasticsearchService {
         }
     }
 }
-
@@ -0,0 +1,236 @@
+package com.monitor.service;
+
+import com.monitor.entity.ErrorLog;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 错误聚合器
+ * 在短时间窗口内按 (projectId, errorHash) 合并错误发生次数，
+ * 定时以无序批量 upsert 写入 MongoDB：count 使用 $inc，lastSeen 使用 $max，首次出现的字段使用 $setOnInsert。
+ * 待写入的错误数达到 max-pending 时提前在后台线程刷写，上报线程不等待 MongoDB / Redis
+ */
+@Service
+@RequiredArgsConstructor
+public class ErrorAggregator {
+    
+    private final MongoTemplate mongoTemplate;
+    private final CacheService cacheService;
+    
+    @Value("${error-aggregator.max-pending:10000}")
+    private int maxPending;
+    
+    @Value("${error-aggregator.max-users-per-flush:1000}")
+    private int maxUsersPerFlush;
+    
+    private final ConcurrentHashMap<String, PendingError> pending = new ConcurrentHashMap<>();
+    
+    private volatile boolean indexEnsured;
+    
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "error-aggregator-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    
+    private final AtomicLong occurrences = new AtomicLong();
+    private final AtomicLong upserts = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    
+    /**
+     * 确保 (projectId, errorHash) 唯一索引存在，并发 upsert 依赖该索引避免重复文档
+     * 在首次刷写时执行，避免 MongoDB 不可用时阻塞启动
+     */
+    private void ensureIndex() {
+        if (indexEnsured) {
+            return;
+        }
+        try {
+            mongoTemplate.indexOps(ErrorLog.class).ensureIndex(new Index()
+                .on("projectId", Sort.Direction.ASC)
+                .on("errorHash", Sort.Direction.ASC)
+                .unique()
+                .named("projectId_errorHash"));
+            indexEnsured = true;
+        } catch (DataAccessResourceFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            // 已有重复数据等情况下无法建立唯一索引，不影响写入
+            System.err.println("⚠️ Failed to ensure error hash index: " + e.getMessage());
+            indexEnsured = true;
+        }
+    }
+    
+    /**
+     * 记录一次错误发生
+     * @param sample 本次错误的详情，仅在该错误首次写入时使用
+     */
+    public void add(ErrorLog sample, String user) {
+        String key = sample.getProjectId() + "|" + sample.getErrorHash();
+        pending.compute(key, (k, existing) -> {
+            PendingError entry = existing != null ? existing : new PendingError(sample);
+            entry.count++;
+            if (sample.getLastSeen().after(entry.lastSeen)) {
+                entry.lastSeen = sample.getLastSeen();
+            }
+            if (entry.users.size() < maxUsersPerFlush) {
+                entry.users.add(user);
+            }
+            return entry;
+        });
+        occurrences.incrementAndGet();
+        
+        if (pending.size() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * 丢弃指定项目尚未写入的错误，清除项目数据前调用，避免清除后又被写回
+     * 与 flush 互斥：正在进行的刷写完成后才执行
+     */
+    public synchronized void discard(String projectId) {
+        String prefix = projectId + "|";
+        pending.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+    
+    /**
+     * 定时刷写聚合结果
+     */
+    @Scheduled(fixedDelayString = "${error-aggregator.flush-interval:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        // 逐个取出，取出后的新错误会进入下一轮
+        List<PendingError> batch = new ArrayList<>(pending.size());
+        for (String key : pending.keySet()) {
+            PendingError entry = pending.remove(key);
+            if (entry != null) {
+                batch.add(entry);
+            }
+        }
+        
+        try {
+            ensureIndex();
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ErrorLog.class);
+            for (PendingError entry : batch) {
+                ErrorLog sample = entry.sample;
+                
+                // 使用按天的 HyperLogLog 统计受影响用户数
+                String errorKey = sample.getProjectId() + ":" + sample.getErrorHash();
+                cacheService.addErrorUsers(errorKey, entry.users);
+                Long affectedUsers = cacheService.countErrorUsers(errorKey, cacheService.getErrorUsersRetentionDays());
+                
+                Query query = new Query(Criteria.where("projectId").is(sample.getProjectId())
+                    .and("errorHash").is(sample.getErrorHash()));
+                Update update = new Update()
+                    .inc("count", entry.count)
+                    .max("lastSeen", entry.lastSeen)
+                    .max("affectedUsers", affectedUsers != null ? affectedUsers.intValue() : entry.users.size())
+                    .setOnInsert("type", sample.getType())
+                    .setOnInsert("message", sample.getMessage())
+                    .setOnInsert("stack", sample.getStack())
+                    .setOnInsert("url", sample.getUrl())
+                    .setOnInsert("line", sample.getLine())
+                    .setOnInsert("col", sample.getCol())
+                    .setOnInsert("userAgent", sample.getUserAgent())
+                    .setOnInsert("userId", sample.getUserId())
+                    .setOnInsert("sessionId", sample.getSessionId())
+                    .setOnInsert("timestamp", sample.getTimestamp())
+                    .setOnInsert("firstSeen", sample.getFirstSeen());
+                ops.upsert(query, update);
+            }
+            BulkWriteResult result = ops.execute();
+            upserts.addAndGet(result.getModifiedCount() + result.getUpserts().size());
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            System.err.println("❌ Error aggregator flush failed (" + batch.size() + " errors): " + e.getMessage());
+            // 合并回待写入队列，下一轮重试
+            for (PendingError entry : batch) {
+                String key = entry.sample.getProjectId() + "|" + entry.sample.getErrorHash();
+                pending.merge(key, entry, (current, failed) -> failed.merge(current));
+            }
+        }
+    }
+    
+    /**
+     * 关闭前写入剩余聚合结果
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * 聚合统计指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("pendingErrors", pending.size());
+        metrics.put("occurrences", occurrences.get());
+        metrics.put("upserts", upserts.get());
+        metrics.put("failedFlushes", failedFlushes.get());
+        return metrics;
+    }
+    
+    /**
+     * 窗口内同一错误的累计数据
+     */
+    private static class PendingError {
+        final ErrorLog sample;
+        final Set<String> users = ConcurrentHashMap.newKeySet();
+        long count;
+        Date lastSeen;
+        
+        PendingError(ErrorLog sample) {
+            this.sample = sample;
+            this.lastSeen = sample.getLastSeen();
+        }
+        
+        PendingError merge(PendingError other) {
+            count += other.count;
+            if (other.lastSeen.after(lastSeen)) {
+                lastSeen = other.lastSeen;
+            }
+            users.addAll(other.users);
+            return this;
+        }
+    }
+}
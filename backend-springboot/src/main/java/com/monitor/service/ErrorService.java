@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
  * 错误服务
@@ -26,11 +27,13 @@ public class ErrorService {
     private final ErrorLogRepository errorLogRepository;
     private final InfluxDBService influxDBService;
     private final CacheService cacheService;
+    private final StatsCache statsCache;
+    private final ErrorAggregator errorAggregator;
     
     /**
      * 生成错误指纹
      */
-    private String generateErrorHash(String message, String stack, String url) {
+    static String generateErrorHash(String message, String stack, String url) {
         try {
             String content = message + "|" + 
                 (stack != null ? stack.substring(0, Math.min(200, stack.length())) : "") + "|" + 
@@ -52,58 +55,33 @@ public class ErrorService {
     
     /**
      * 上报错误
+     * 错误发生次数由 ErrorAggregator 合并后批量写入 MongoDB
+     * @return 错误指纹
      */
-    public ErrorLog report(String projectId, String type, String message, String stack,
-                          String url, Integer line, Integer col, String userAgent,
-                          String userId, String sessionId) {
+    public String report(String projectId, String type, String message, String stack,
+                         String url, Integer line, Integer col, String userAgent,
+                         String userId, String sessionId) {
         Date timestamp = new Date();
         String errorHash = generateErrorHash(message, stack, url);
         
-        // 查找已存在的相同错误
-        Optional<ErrorLog> existingErrorOpt = errorLogRepository.findByProjectIdAndErrorHash(projectId, errorHash);
+        ErrorLog error = new ErrorLog();
+        error.setProjectId(projectId);
+        error.setType(type != null ? type : "js");
+        error.setMessage(message);
+        error.setStack(stack);
+        error.setUrl(url);
+        error.setLine(line);
+        error.setCol(col);
+        error.setUserAgent(userAgent);
+        error.setUserId(userId);
+        error.setSessionId(sessionId);
+        error.setTimestamp(timestamp);
+        error.setErrorHash(errorHash);
+        error.setFirstSeen(timestamp);
+        error.setLastSeen(timestamp);
         
-        ErrorLog error;
-        if (existingErrorOpt.isPresent()) {
-            // 更新已有错误
-            ErrorLog existingError = existingErrorOpt.get();
-            String currentUser = userId != null ? userId : (sessionId != null ? sessionId : "anonymous");
-            String errorId = existingError.getId();
-            
-            // 使用 Redis Set 统计受影响用户数
-            cacheService.addToUserSet(errorId, currentUser);
-            Long actualUserCount = cacheService.getUserSetSize(errorId);
-            
-            existingError.setCount(existingError.getCount() + 1);
-            existingError.setLastSeen(timestamp);
-            existingError.setAffectedUsers(actualUserCount.intValue());
-            
-            error = errorLogRepository.save(existingError);
-        } else {
-            // 创建新错误记录
-            error = new ErrorLog();
-            error.setProjectId(projectId);
-            error.setType(type != null ? type : "js");
-            error.setMessage(message);
-            error.setStack(stack);
-            error.setUrl(url);
-            error.setLine(line);
-            error.setCol(col);
-            error.setUserAgent(userAgent);
-            error.setUserId(userId);
-            error.setSessionId(sessionId);
-            error.setTimestamp(timestamp);
-            error.setErrorHash(errorHash);
-            error.setCount(1);
-            error.setFirstSeen(timestamp);
-            error.setLastSeen(timestamp);
-            error.setAffectedUsers(1);
-            
-            error = errorLogRepository.save(error);
-            
-            // 初始化用户集合
-            String currentUser = userId != null ? userId : (sessionId != null ? sessionId : "anonymous");
-            cacheService.addToUserSet(error.getId(), currentUser);
-        }
+        String currentUser = userId != null ? userId : (sessionId != null ? sessionId : "anonymous");
+        errorAggregator.add(error, currentUser);
         
         // 写入 InfluxDB
         influxDBService.writeErrorCount(projectId, type != null ? type : "js");
@@ -111,11 +89,10 @@ public class ErrorService {
         // 更新实时计数
         cacheService.incrTodayErrorCount(projectId);
         
-        // 清除统计缓存
-        cacheService.delete("error:stats:" + projectId);
-        cacheService.delete("dashboard:" + projectId);
+        // 标记统计缓存失效（定时合并为一次版本递增）
+        statsCache.markDirty(StatsCache.MODULE_ERROR, projectId);
         
-        return error;
+        return errorHash;
     }
     
     /**
@@ -156,33 +133,8 @@ public class ErrorService {
      * 获取错误统计
      */
     public Map<String, Object> getStats(String projectId) {
-        // 尝试从缓存获取
-        Map<String, Object> cached = cacheService.get("error:stats:" + projectId, Map.class);
-        if (cached != null) {
-            return cached;
-        }
-        
         try {
-            // 获取总错误数
-            long total = errorLogRepository.countByProjectId(projectId);
-            
-            // 按类型统计
-            List<ErrorLog> typeStats = errorLogRepository.findTypeStatsByProjectId(projectId);
-            Map<String, Long> typeStatsMap = new HashMap<>();
-            for (ErrorLog error : typeStats) {
-                typeStatsMap.put(error.getType(), 
-                    typeStatsMap.getOrDefault(error.getType(), 0L) + error.getCount());
-            }
-            
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("total", total);
-            stats.put("typeStats", typeStatsMap);
-            stats.put("timeStats", new HashMap<>()); // TODO: 从 InfluxDB 查询时间趋势
-            
-            // 缓存结果
-            cacheService.set("error:stats:" + projectId, stats, 60L);
-            
-            return stats;
+            return loadStats(projectId);
         } catch (Exception e) {
             System.err.println("Error stats query failed: " + e.getMessage());
             Map<String, Object> stats = new HashMap<>();
@@ -192,5 +144,52 @@ public class ErrorService {
             return stats;
         }
     }
+    
+    /**
+     * 获取错误统计，查询失败时抛出异常（Dashboard 据此标记数据源不可用）
+     */
+    public Map<String, Object> loadStats(String projectId) {
+        return statsCache.get(StatsCache.MODULE_ERROR, projectId, 60L, () -> computeStats(projectId));
+    }
+    
+    private Map<String, Object> computeStats(String projectId) {
+        // 获取总错误数
+        long total = errorLogRepository.countByProjectId(projectId);
+        
+        // 按类型统计
+        List<ErrorLog> typeStats = errorLogRepository.findTypeStatsByProjectId(projectId);
+        Map<String, Long> typeStatsMap = new HashMap<>();
+        for (ErrorLog error : typeStats) {
+            typeStatsMap.put(error.getType(), 
+                typeStatsMap.getOrDefault(error.getType(), 0L) + error.getCount());
+        }
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total);
+        stats.put("typeStats", typeStatsMap);
+        Map<String, Long> timeStats = queryTimeStats(projectId);
+        stats.put("timeStats", timeStats != null ? timeStats : new TreeMap<>());
+        // 趋势查询失败时标记为 partial，统计缓存不会保存该结果
+        if (timeStats == null) {
+            stats.put("partial", true);
+        }
+        return stats;
+    }
+    
+    /**
+     * 错误数时间趋势（读取降采样层，不扫描原始数据）
+     * @return 查询失败时返回 null
+     */
+    private Map<String, Long> queryTimeStats(String projectId) {
+        Map<String, Long> timeStats = new TreeMap<>();
+        try {
+            influxDBService.queryCounterTrend(projectId, "error_count", "count", null, InfluxDBService.TREND_RANGE)
+                .forEach((time, countSum) -> timeStats.put(time, Math.round(countSum[1])));
+        } catch (Exception e) {
+            System.err.println("Error trend query failed: " + e.getMessage());
+            return null;
+        }
+        return timeStats;
+    }
 }
 
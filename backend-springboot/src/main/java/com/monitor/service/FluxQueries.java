@@ -0,0 +1,110 @@
+package com.monitor.service;
+
+import com.influxdb.Cancellable;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.Query;
+import com.influxdb.client.internal.AbstractInfluxDBClient;
+import com.influxdb.client.service.QueryService;
+import com.influxdb.exceptions.InfluxException;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import com.influxdb.query.internal.FluxCsvParser;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 可取消的 Flux 流式查询
+ * QueryApi 的异步查询只在第一条结果到达时才交出 Cancellable，InfluxDB 还在计算聚合时无法取消；
+ * 这里直接发起查询请求并持有 HTTP 调用，超时或中断时取消调用（断开连接），InfluxDB 随之终止查询
+ */
+final class FluxQueries {
+    
+    private FluxQueries() {
+    }
+    
+    /**
+     * 执行查询，逐条回调结果记录，等待查询结束或超时
+     * 超时或中断时取消查询，已返回的调用方不会再被回调修改结果
+     */
+    static void stream(InfluxDBClient client, String org, String flux, long timeoutMillis, Consumer<FluxRecord> consumer) {
+        Query query = new Query().query(flux).dialect(AbstractInfluxDBClient.DEFAULT_DIALECT);
+        Call<ResponseBody> call = client.getService(QueryService.class)
+            .postQueryResponseBody(null, null, null, org, null, query);
+        
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean abandoned = new AtomicBoolean(false);
+        Cancellable cancellable = new Cancellable() {
+            @Override
+            public void cancel() {
+                abandoned.set(true);
+                call.cancel();
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return abandoned.get();
+            }
+        };
+        
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<ResponseBody> c, Response<ResponseBody> response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        failure.set(new InfluxException(response));
+                        return;
+                    }
+                    new FluxCsvParser().parseFluxResponse(body.source(), cancellable, new FluxCsvParser.FluxResponseConsumer() {
+                        @Override
+                        public void accept(int index, Cancellable ignored, FluxTable table) {
+                        }
+                        
+                        @Override
+                        public void accept(int index, Cancellable ignored, FluxRecord record) {
+                            if (!abandoned.get()) {
+                                consumer.accept(record);
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    if (!abandoned.get()) {
+                        failure.set(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<ResponseBody> c, Throwable t) {
+                if (!abandoned.get()) {
+                    failure.set(t);
+                }
+                done.countDown();
+            }
+        });
+        
+        try {
+            if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                cancellable.cancel();
+                throw new IllegalStateException("InfluxDB query timed out");
+            }
+        } catch (InterruptedException e) {
+            cancellable.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("InfluxDB query interrupted", e);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("InfluxDB query failed: " + failure.get().getMessage(), failure.get());
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package com.monitor.service;
 
 import com.influxdb.client.InfluxDBClient;
-import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.domain.Bucket;
+import com.influxdb.client.domain.BucketRetentionRules;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
+import com.influxdb.query.FluxRecord;
+import com.monitor.config.InfluxDBConfig;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * InfluxDB 服务
@@ -20,6 +33,36 @@ import java.util.Map;
 public class InfluxDBService {
     
     private final InfluxDBClient influxDBClient;
+    private final InfluxDBWriter influxDBWriter;
+    private final InfluxDBConfig influxDBConfig;
+    private final TagCardinalityGovernor tagGovernor;
+    private final RollupService rollupService;
+    private final CacheService cacheService;
+    
+    public static final String DEFAULT_RANGE = "24h";
+    
+    /**
+     * 各项目已删除到的时间（毫秒），此前的数据已全部删除
+     */
+    private static final String DELETED_UNTIL_KEY = "retention:influx:";
+    
+    /**
+     * 错误、行为、接口统计中时间趋势的默认范围
+     */
+    public static final String TREND_RANGE = "7d";
+    
+    /**
+     * 查询范围与聚合窗口
+     */
+    private static final Map<String, String> PERFORMANCE_WINDOWS = Map.of(
+        "1h", "1m",
+        "24h", "15m",
+        "7d", "1h",
+        "30d", "6h"
+    );
+    
+    private static final DateTimeFormatter TREND_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
     
     private boolean isConnected() {
         return influxDBClient != null;
@@ -31,14 +74,22 @@ public class InfluxDBService {
     public void writePerformance(String projectId, String url, String userId, String sessionId,
                                  Long loadTime, Long domReady, Long fcp, Long lcp, Long fid,
                                  Double cls, Long dns, Long tcp, Long ttfb) {
-        if (!isConnected()) return;
-        
+        influxDBWriter.write(performancePoint(projectId, url, userId, sessionId,
+            loadTime, domReady, fcp, lcp, fid, cls, dns, tcp, ttfb));
+    }
+    
+    /**
+     * 构建性能数据点
+     */
+    Point performancePoint(String projectId, String url, String userId, String sessionId,
+                           Long loadTime, Long domReady, Long fcp, Long lcp, Long fid,
+                           Double cls, Long dns, Long tcp, Long ttfb) {
         Point point = Point.measurement("performance")
             .time(Instant.now(), WritePrecision.MS);
         if (projectId != null) point = point.addTag("projectId", projectId);
-        if (url != null) point = point.addTag("url", url);
-        if (userId != null) point = point.addTag("userId", userId);
-        if (sessionId != null) point = point.addTag("sessionId", sessionId);
+        if (url != null) point = point.addTag("url", tagGovernor.url(projectId, "url", url));
+        point = addIdentity(point, projectId, "userId", userId);
+        point = addIdentity(point, projectId, "sessionId", sessionId);
         point = point.addField("loadTime", loadTime != null ? loadTime : 0L)
             .addField("domReady", domReady != null ? domReady : 0L)
             .addField("fcp", fcp != null ? fcp : 0L)
@@ -48,9 +99,7 @@ public class InfluxDBService {
             .addField("dns", dns != null ? dns : 0L)
             .addField("tcp", tcp != null ? tcp : 0L)
             .addField("ttfb", ttfb != null ? ttfb : 0L);
-        
-        WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
-        writeApi.writePoint(point);
+        return point;
     }
     
     /**
@@ -58,20 +107,17 @@ public class InfluxDBService {
      */
     public void writeBehavior(String projectId, String type, String url, String path,
                              String userId, String sessionId) {
-        if (!isConnected()) return;
-        
         Point point = Point.measurement("behavior")
             .time(Instant.now(), WritePrecision.MS);
         if (projectId != null) point = point.addTag("projectId", projectId);
-        if (type != null) point = point.addTag("type", type);
-        if (url != null) point = point.addTag("url", url);
-        if (path != null) point = point.addTag("path", path);
-        if (userId != null) point = point.addTag("userId", userId);
+        if (type != null) point = point.addTag("type", tagGovernor.tag(projectId, "type", type));
+        if (url != null) point = point.addTag("url", tagGovernor.url(projectId, "url", url));
+        if (path != null) point = point.addTag("path", tagGovernor.url(projectId, "path", path));
+        point = addIdentity(point, projectId, "userId", userId);
         point = point.addField("count", 1L)
             .addField("sessionId", sessionId != null ? sessionId : "none");
         
-        WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
-        writeApi.writePoint(point);
+        influxDBWriter.write(point);
     }
     
     /**
@@ -79,46 +125,329 @@ public class InfluxDBService {
      */
     public void writeApiMonitor(String projectId, String url, String method, Integer status,
                                 Long responseTime, String userId, String sessionId) {
-        if (!isConnected()) return;
-        
         Point point = Point.measurement("api_monitor")
             .time(Instant.now(), WritePrecision.MS);
         if (projectId != null) point = point.addTag("projectId", projectId);
-        if (url != null) point = point.addTag("url", url);
-        if (method != null) point = point.addTag("method", method);
-        if (userId != null) point = point.addTag("userId", userId);
-        if (sessionId != null) point = point.addTag("sessionId", sessionId);
+        if (url != null) point = point.addTag("url", tagGovernor.url(projectId, "url", url));
+        if (method != null) point = point.addTag("method", tagGovernor.tag(projectId, "method", method.toUpperCase()));
+        point = addIdentity(point, projectId, "userId", userId);
+        point = addIdentity(point, projectId, "sessionId", sessionId);
         point = point.addField("responseTime", responseTime != null ? responseTime : 0L)
             .addField("status", status != null ? status : 200)
             .addField("success", status != null && status >= 200 && status < 400);
         
-        WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
-        writeApi.writePoint(point);
+        influxDBWriter.write(point);
     }
     
     /**
      * 写入错误计数
      */
     public void writeErrorCount(String projectId, String type) {
-        if (!isConnected()) return;
-        
         Point point = Point.measurement("error_count")
             .time(Instant.now(), WritePrecision.MS);
         if (projectId != null) point = point.addTag("projectId", projectId);
-        if (type != null) point = point.addTag("type", type);
+        if (type != null) point = point.addTag("type", tagGovernor.tag(projectId, "type", type));
         point = point.addField("count", 1L);
         
-        WriteApiBlocking writeApi = influxDBClient.getWriteApiBlocking();
-        writeApi.writePoint(point);
+        influxDBWriter.write(point);
+    }
+    
+    /**
+     * 用户 / 会话等标识：配置为高基数维度时写为字段，否则作为受限标签
+     */
+    private Point addIdentity(Point point, String projectId, String name, String value) {
+        if (value == null) {
+            return point;
+        }
+        if (tagGovernor.isField(name)) {
+            return point.addField(name, value);
+        }
+        return point.addTag(name, tagGovernor.tag(projectId, name, value));
     }
     
-    // 注意：InfluxDB 查询需要使用 Flux 语言，这里简化处理
-    // 实际项目中应该使用 InfluxDB Query API 或 Flux 查询语言
-    // 为了简化，这里返回空数据，实际使用时需要实现 Flux 查询
+    /**
+     * 是否为支持的查询范围
+     */
+    public static boolean isSupportedRange(String range) {
+        return range != null && PERFORMANCE_WINDOWS.containsKey(range);
+    }
     
-    public Map<String, Object> queryPerformanceStats(String projectId, String startTime, String endTime) {
-        // TODO: 实现 Flux 查询
-        return new HashMap<>();
+    /**
+     * 查询 Web Vitals 统计
+     * 分位数和均值在 InfluxDB 端计算，结果按记录流式回调处理，不在 JVM 中加载原始数据点
+     * @param range 时间范围：1h / 24h / 7d / 30d
+     * @return metrics（各指标 p50/p75/p95/mean）、pages（按页面的分位数）、timeStats（按窗口的 loadTime 趋势）
+     * @throws IllegalStateException InfluxDB 未连接或查询失败，不返回零值结果
+     */
+    public Map<String, Object> queryPerformanceStats(String projectId, String range) {
+        if (!isConnected()) {
+            throw new IllegalStateException("InfluxDB client not available");
+        }
+        String window = PERFORMANCE_WINDOWS.getOrDefault(range, PERFORMANCE_WINDOWS.get(DEFAULT_RANGE));
+        String start = PERFORMANCE_WINDOWS.containsKey(range) ? range : DEFAULT_RANGE;
+        
+        RollupService.Tier tier = rollupService.route(durationSeconds(start), durationSeconds(window));
+        if (tier != RollupService.Tier.RAW) {
+            return queryPerformanceRollup(projectId, start, window, tier);
+        }
+        
+        Map<String, Map<String, Object>> metrics = new HashMap<>();
+        Map<String, Map<String, Object>> pages = new HashMap<>();
+        Map<String, Map<String, Object>> timeStats = new TreeMap<>();
+        
+        String flux = buildPerformanceQuery(projectId, start, window);
+        streamQuery(flux, record -> {
+            String result = (String) record.getValueByKey("result");
+            Object value = record.getValue();
+            if (result == null || !(value instanceof Number)) {
+                return;
+            }
+            double number = ((Number) value).doubleValue();
+            String field = record.getField();
+            if (result.startsWith("page_")) {
+                String url = String.valueOf(record.getValueByKey("url"));
+                Map<String, Object> page = pages.computeIfAbsent(url, k -> new HashMap<>(Map.of("url", url)));
+                if ("page_count".equals(result)) {
+                    page.put("count", ((Number) value).longValue());
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> stats = (Map<String, Object>) page.computeIfAbsent(field, k -> new HashMap<>());
+                    stats.put(result.substring("page_".length()), roundMetric(field, number));
+                }
+            } else if (result.startsWith("trend_") && record.getTime() != null) {
+                String time = TREND_FORMATTER.format(record.getTime());
+                Map<String, Object> point = timeStats.computeIfAbsent(time, k -> new HashMap<>());
+                point.put("trend_mean".equals(result) ? "avgLoadTime" : "p75LoadTime", roundMetric("loadTime", number));
+            } else {
+                metrics.computeIfAbsent(field, k -> new HashMap<>()).put(result, roundMetric(field, number));
+            }
+        });
+        
+        // 按采样数取访问最多的页面
+        List<Map<String, Object>> topPages = new ArrayList<>(pages.values());
+        topPages.sort(Comparator.comparingLong((Map<String, Object> p) -> ((Number) p.getOrDefault("count", 0L)).longValue()).reversed());
+        int topLimit = influxDBConfig.getQuery().getTopPages();
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("range", start);
+        stats.put("window", window);
+        stats.put("tier", "raw");
+        stats.put("metrics", metrics);
+        stats.put("pages", topPages.size() > topLimit ? new ArrayList<>(topPages.subList(0, topLimit)) : topPages);
+        stats.put("timeStats", timeStats);
+        return stats;
+    }
+    
+    /**
+     * 从降采样层查询 Web Vitals 统计
+     * 均值由 sum / count 计算，分位数为各窗口分位数的均值（近似值），数据截止到该层水位
+     */
+    private Map<String, Object> queryPerformanceRollup(String projectId, String range, String window, RollupService.Tier tier) {
+        Map<String, double[]> totals = new HashMap<>();
+        Map<String, Map<String, Object>> metrics = new HashMap<>();
+        Map<String, Map<String, Object>> pages = new HashMap<>();
+        Map<String, double[]> trendTotals = new TreeMap<>();
+        Map<String, Map<String, Object>> timeStats = new TreeMap<>();
+        
+        long watermark = rollupService.getWatermark(tier);
+        String flux = buildPerformanceRollupQuery(projectId, range, window, tier, watermark);
+        streamQuery(flux, record -> {
+            String result = (String) record.getValueByKey("result");
+            Object value = record.getValue();
+            String field = record.getField();
+            if (result == null || !(value instanceof Number) || field == null || field.lastIndexOf('_') < 0) {
+                return;
+            }
+            double number = ((Number) value).doubleValue();
+            String metric = field.substring(0, field.lastIndexOf('_'));
+            String stat = field.substring(field.lastIndexOf('_') + 1);
+            switch (result) {
+                case "total" -> totals.computeIfAbsent(metric, k -> new double[2])["count".equals(stat) ? 1 : 0] += number;
+                case "quantile" -> metrics.computeIfAbsent(metric, k -> new HashMap<>()).put(stat, roundMetric(metric, number));
+                case "page_total" -> {
+                    String url = String.valueOf(record.getValueByKey("url"));
+                    pages.computeIfAbsent(url, k -> new HashMap<>(Map.of("url", url))).put("count", Math.round(number));
+                }
+                case "page_quantile" -> {
+                    String url = String.valueOf(record.getValueByKey("url"));
+                    Map<String, Object> page = pages.computeIfAbsent(url, k -> new HashMap<>(Map.of("url", url)));
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> stats = (Map<String, Object>) page.computeIfAbsent(metric, k -> new HashMap<>());
+                    stats.put(stat, roundMetric(metric, number));
+                }
+                case "trend_total" -> {
+                    if (record.getTime() != null) {
+                        trendTotals.computeIfAbsent(TREND_FORMATTER.format(record.getTime()), k -> new double[2])["count".equals(stat) ? 1 : 0] += number;
+                    }
+                }
+                case "trend_quantile" -> {
+                    if (record.getTime() != null) {
+                        timeStats.computeIfAbsent(TREND_FORMATTER.format(record.getTime()), k -> new HashMap<>())
+                            .put("p75LoadTime", roundMetric("loadTime", number));
+                    }
+                }
+                default -> { }
+            }
+        });
+        
+        totals.forEach((metric, sumCount) -> {
+            if (sumCount[1] > 0) {
+                metrics.computeIfAbsent(metric, k -> new HashMap<>()).put("mean", roundMetric(metric, sumCount[0] / sumCount[1]));
+            }
+        });
+        trendTotals.forEach((time, sumCount) -> {
+            if (sumCount[1] > 0) {
+                timeStats.computeIfAbsent(time, k -> new HashMap<>()).put("avgLoadTime", roundMetric("loadTime", sumCount[0] / sumCount[1]));
+            }
+        });
+        
+        List<Map<String, Object>> topPages = new ArrayList<>(pages.values());
+        topPages.sort(Comparator.comparingLong((Map<String, Object> p) -> ((Number) p.getOrDefault("count", 0L)).longValue()).reversed());
+        int topLimit = influxDBConfig.getQuery().getTopPages();
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("range", range);
+        stats.put("window", window);
+        stats.put("tier", tier.getEvery());
+        stats.put("dataUntil", Instant.ofEpochMilli(watermark).toString());
+        stats.put("metrics", metrics);
+        stats.put("pages", topPages.size() > topLimit ? new ArrayList<>(topPages.subList(0, topLimit)) : topPages);
+        stats.put("timeStats", timeStats);
+        return stats;
+    }
+    
+    private String buildPerformanceRollupQuery(String projectId, String range, String window, RollupService.Tier tier, long watermark) {
+        return "data = from(bucket: \"" + escape(influxDBConfig.getBucket()) + "\")\n"
+            + "  |> range(start: -" + range + ", stop: time(v: \"" + Instant.ofEpochMilli(watermark) + "\"))\n"
+            + "  |> filter(fn: (r) => r._measurement == \"performance" + tier.getSuffix() + "\" and r.projectId == \"" + escape(projectId) + "\")\n"
+            + "  |> filter(fn: (r) => r._field =~ /^(loadTime|fcp|lcp|fid|cls|ttfb)_(sum|count|p50|p75|p95)$/)\n"
+            + "totals = data |> filter(fn: (r) => r._field =~ /_(sum|count)$/)\n"
+            + "quantiles = data |> filter(fn: (r) => r._field =~ /_p(50|75|95)$/)\n"
+            + "totals |> group(columns: [\"_field\"]) |> sum() |> yield(name: \"total\")\n"
+            + "quantiles |> group(columns: [\"_field\"]) |> mean() |> yield(name: \"quantile\")\n"
+            + "totals |> filter(fn: (r) => r._field == \"loadTime_count\") |> group(columns: [\"url\", \"_field\"]) |> sum() |> yield(name: \"page_total\")\n"
+            + "quantiles |> group(columns: [\"url\", \"_field\"]) |> mean() |> yield(name: \"page_quantile\")\n"
+            + "totals |> filter(fn: (r) => r._field == \"loadTime_sum\" or r._field == \"loadTime_count\") |> group(columns: [\"_field\"])\n"
+            + "  |> aggregateWindow(every: " + window + ", fn: sum, createEmpty: false) |> yield(name: \"trend_total\")\n"
+            + "quantiles |> filter(fn: (r) => r._field == \"loadTime_p75\") |> group(columns: [\"_field\"])\n"
+            + "  |> aggregateWindow(every: " + window + ", fn: mean, createEmpty: false) |> yield(name: \"trend_quantile\")\n";
+    }
+    
+    /**
+     * 计数类指标的时间趋势（按窗口的数据点数和字段值之和）
+     * 已降采样的部分读取降采样层，水位之后的部分读取原始数据，两部分按窗口相加
+     * @param tags 额外的标签过滤条件
+     * @return 时间 -> [count, sum]
+     */
+    public Map<String, double[]> queryCounterTrend(String projectId, String measurement, String field,
+                                                   Map<String, String> tags, String range) {
+        String window = PERFORMANCE_WINDOWS.getOrDefault(range, PERFORMANCE_WINDOWS.get(DEFAULT_RANGE));
+        String start = PERFORMANCE_WINDOWS.containsKey(range) ? range : DEFAULT_RANGE;
+        RollupService.Tier tier = rollupService.route(durationSeconds(start), durationSeconds(window));
+        
+        StringBuilder tagFilter = new StringBuilder("r.projectId == \"" + escape(projectId) + "\"");
+        if (tags != null) {
+            tags.forEach((tag, value) -> tagFilter.append(" and r[\"").append(escape(tag)).append("\"] == \"").append(escape(value)).append("\""));
+        }
+        String bucket = escape(influxDBConfig.getBucket());
+        String windowArgs = "every: " + window + ", timeSrc: \"_start\", createEmpty: false";
+        
+        StringBuilder flux = new StringBuilder();
+        String rawStart = "-" + start;
+        if (tier != RollupService.Tier.RAW) {
+            String watermark = Instant.ofEpochMilli(rollupService.getWatermark(tier)).toString();
+            rawStart = "time(v: \"" + watermark + "\")";
+            flux.append("from(bucket: \"").append(bucket).append("\")\n")
+                .append("  |> range(start: -").append(start).append(", stop: time(v: \"").append(watermark).append("\"))\n")
+                .append("  |> filter(fn: (r) => r._measurement == \"").append(escape(measurement)).append(tier.getSuffix()).append("\" and ").append(tagFilter).append(")\n")
+                .append("  |> filter(fn: (r) => r._field == \"").append(escape(field)).append("_count\" or r._field == \"").append(escape(field)).append("_sum\")\n")
+                .append("  |> group(columns: [\"_field\"])\n")
+                .append("  |> aggregateWindow(").append(windowArgs).append(", fn: sum) |> yield(name: \"tier\")\n");
+        }
+        flux.append("raw = from(bucket: \"").append(bucket).append("\")\n")
+            .append("  |> range(start: ").append(rawStart).append(")\n")
+            .append("  |> filter(fn: (r) => r._measurement == \"").append(escape(measurement)).append("\" and ").append(tagFilter).append(")\n")
+            .append("  |> filter(fn: (r) => r._field == \"").append(escape(field)).append("\")\n")
+            .append("  |> toFloat()\n")
+            .append("  |> group(columns: [\"_field\"])\n")
+            .append("raw |> aggregateWindow(").append(windowArgs).append(", fn: count) |> yield(name: \"raw_count\")\n")
+            .append("raw |> aggregateWindow(").append(windowArgs).append(", fn: sum) |> yield(name: \"raw_sum\")\n");
+        
+        Map<String, double[]> trend = new TreeMap<>();
+        streamQuery(flux.toString(), record -> {
+            String result = (String) record.getValueByKey("result");
+            Object value = record.getValue();
+            if (result == null || !(value instanceof Number) || record.getTime() == null) {
+                return;
+            }
+            boolean isCount = "raw_count".equals(result)
+                || ("tier".equals(result) && String.valueOf(record.getField()).endsWith("_count"));
+            trend.computeIfAbsent(TREND_FORMATTER.format(record.getTime()), k -> new double[2])[isCount ? 0 : 1]
+                += ((Number) value).doubleValue();
+        });
+        return trend;
+    }
+    
+    private String buildPerformanceQuery(String projectId, String range, String window) {
+        return "data = from(bucket: \"" + escape(influxDBConfig.getBucket()) + "\")\n"
+            + "  |> range(start: -" + range + ")\n"
+            + "  |> filter(fn: (r) => r._measurement == \"performance\" and r.projectId == \"" + escape(projectId) + "\")\n"
+            + "  |> filter(fn: (r) => contains(value: r._field, set: [\"loadTime\", \"fcp\", \"lcp\", \"fid\", \"cls\", \"ttfb\"]))\n"
+            + "  |> toFloat()\n"
+            // 未采集到的指标以 0 写入，计算分位数时排除（CLS 为 0 是合法值）
+            + "  |> filter(fn: (r) => r._value > 0.0 or r._field == \"cls\")\n"
+            + "pct = (tables=<-, q) => tables |> quantile(q: q, method: \"estimate_tdigest\")\n"
+            + "overall = data |> group(columns: [\"_field\"])\n"
+            + "overall |> pct(q: 0.5) |> yield(name: \"p50\")\n"
+            + "overall |> pct(q: 0.75) |> yield(name: \"p75\")\n"
+            + "overall |> pct(q: 0.95) |> yield(name: \"p95\")\n"
+            + "overall |> mean() |> yield(name: \"mean\")\n"
+            + "pages = data |> group(columns: [\"url\", \"_field\"])\n"
+            + "pages |> pct(q: 0.5) |> yield(name: \"page_p50\")\n"
+            + "pages |> pct(q: 0.75) |> yield(name: \"page_p75\")\n"
+            + "pages |> pct(q: 0.95) |> yield(name: \"page_p95\")\n"
+            + "pages |> filter(fn: (r) => r._field == \"loadTime\") |> count() |> yield(name: \"page_count\")\n"
+            + "trend = data |> filter(fn: (r) => r._field == \"loadTime\") |> group(columns: [\"_field\"])\n"
+            + "trend |> aggregateWindow(every: " + window + ", fn: mean, createEmpty: false) |> yield(name: \"trend_mean\")\n"
+            + "trend |> aggregateWindow(every: " + window + ", fn: (column, tables=<-) => tables |> quantile(q: 0.75, column: column, method: \"estimate_tdigest\"), createEmpty: false) |> yield(name: \"trend_p75\")\n";
+    }
+    
+    /**
+     * 执行 Flux 查询，逐条回调结果记录，等待查询结束或超时
+     * 超时或中断时取消 HTTP 调用，InfluxDB 端的查询随之终止（包括尚未返回第一条结果的慢聚合）
+     */
+    private void streamQuery(String flux, Consumer<FluxRecord> consumer) {
+        if (!isConnected()) {
+            return;
+        }
+        FluxQueries.stream(influxDBClient, influxDBConfig.getOrg(), flux, influxDBConfig.getQuery().getTimeout(), consumer);
+    }
+    
+    /**
+     * Flux 时长（如 15m、24h、7d）转换为秒
+     */
+    static long durationSeconds(String duration) {
+        long amount = Long.parseLong(duration.substring(0, duration.length() - 1));
+        return switch (duration.charAt(duration.length() - 1)) {
+            case 'm' -> amount * 60;
+            case 'h' -> amount * 3600;
+            case 'd' -> amount * 86400;
+            default -> amount;
+        };
+    }
+    
+    private Object roundMetric(String field, double value) {
+        if ("cls".equals(field)) {
+            return Math.round(value * 10000) / 10000.0;
+        }
+        return Math.round(value);
+    }
+    
+    /**
+     * 转义 Flux 字符串字面量
+     */
+    private String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
     }
     
     public Map<String, Object> queryBehaviorStats(String projectId, String startTime, String endTime) {
@@ -127,43 +456,181 @@ public class InfluxDBService {
     }
     
     /**
-     * 清除指定项目的所有数据
-     * 注意：InfluxDB 的删除操作需要使用 Flux 语言，这里简化处理
+     * 清除指定项目的所有数据（按时间分块删除）
+     * @return 删除的分块数、数据点数、耗时
      */
-    public void clearAllData(String projectId) {
+    public Map<String, Object> clearAllData(String projectId) {
         if (!isConnected()) {
             System.out.println("⚠️ InfluxDB client not available, skipping clear all data");
-            return;
+            return Map.of("skipped", true);
         }
-        
-        try {
-            // InfluxDB 删除数据需要使用 Flux 查询语言
-            // 这里简化处理，实际应该使用 delete API
-            // 由于 InfluxDB Java Client 的删除操作较复杂，这里只记录日志
-            System.out.println("✅ Cleared all InfluxDB data for project: " + projectId);
-            // TODO: 实现实际的删除逻辑
-        } catch (Exception e) {
-            System.err.println("❌ Failed to clear InfluxDB data: " + e.getMessage());
+        Instant begin = Instant.now();
+        Instant earliest = findEarliest(projectId, deletedUntil(projectId), begin.plusSeconds(60));
+        if (earliest == null) {
+            return deleteResult(0, 0, true, System.currentTimeMillis());
+        }
+        Map<String, Object> result = deleteRange(projectId, earliest, begin.plusSeconds(60), Integer.MAX_VALUE);
+        if (Boolean.TRUE.equals(result.get("completed"))) {
+            markDeleted(projectId, begin);
         }
+        System.out.println("✅ Cleared InfluxDB data for project: " + projectId + " " + result);
+        return result;
     }
     
     /**
-     * 删除超过指定天数的数据
+     * 删除超过指定天数的数据（按时间分块删除，每次任务最多删除 maxChunksPerRun 个分块）
+     * @return 删除的分块数、数据点数、是否已删除到截止时间
      */
-    public void deleteOldData(String projectId, int days) {
+    public Map<String, Object> deleteOldData(String projectId, int days) {
         if (!isConnected()) {
             System.out.println("⚠️ InfluxDB client not available, skipping delete old data");
-            return;
+            return Map.of("skipped", true);
+        }
+        Instant cutoff = Instant.now().minus(days, java.time.temporal.ChronoUnit.DAYS);
+        Instant from = deletedUntil(projectId);
+        if (!from.isBefore(cutoff)) {
+            return deleteResult(0, 0, true, System.currentTimeMillis());
+        }
+        Instant earliest = findEarliest(projectId, from, cutoff);
+        if (earliest == null) {
+            markDeleted(projectId, cutoff);
+            return deleteResult(0, 0, true, System.currentTimeMillis());
+        }
+        Map<String, Object> result = deleteRange(projectId, earliest, cutoff, influxDBConfig.getRetention().getMaxChunksPerRun());
+        markDeleted(projectId, Instant.parse((String) result.get("deletedUntil")));
+        System.out.println("✅ Deleted InfluxDB data older than " + days + " days for project: " + projectId + " " + result);
+        return result;
+    }
+    
+    /**
+     * 设置 bucket 级保留策略（保留天数大于 0 时），由 InfluxDB 按 shard 整体过期，比逐段删除快得多
+     * @return 是否已设置
+     */
+    public boolean applyBucketRetention() {
+        int days = influxDBConfig.getRetention().getBucketRetentionDays();
+        if (!isConnected() || days <= 0) {
+            return false;
+        }
+        Bucket bucket = influxDBClient.getBucketsApi().findBucketByName(influxDBConfig.getBucket());
+        if (bucket == null) {
+            return false;
+        }
+        int everySeconds = days * 86400;
+        List<BucketRetentionRules> rules = bucket.getRetentionRules();
+        if (rules.size() == 1 && Integer.valueOf(everySeconds).equals(rules.get(0).getEverySeconds())) {
+            return true;
         }
+        rules.clear();
+        rules.add(new BucketRetentionRules().everySeconds(everySeconds));
+        influxDBClient.getBucketsApi().updateBucket(bucket);
+        System.out.println("✅ InfluxDB bucket retention set to " + days + " days");
+        return true;
+    }
+    
+    /**
+     * 按时间分块调用 delete API（谓词限定 projectId），分块之间暂停以避免长时间占用存储引擎
+     */
+    private Map<String, Object> deleteRange(String projectId, Instant start, Instant stop, int maxChunks) {
+        InfluxDBConfig.Retention retention = influxDBConfig.getRetention();
+        long begin = System.currentTimeMillis();
+        long chunkMillis = Math.max(1, retention.getChunkHours()) * 3600_000L;
+        String predicate = "projectId=\"" + escape(projectId) + "\"";
         
+        int chunks = 0;
+        long points = 0;
+        Instant from = start;
+        while (from.isBefore(stop) && chunks < maxChunks) {
+            Instant to = from.plusMillis(chunkMillis).isBefore(stop) ? from.plusMillis(chunkMillis) : stop;
+            long count = retention.isCountDeleted() ? countPoints(projectId, from, to) : -1;
+            if (count != 0) {
+                influxDBClient.getDeleteApi().delete(
+                    from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC),
+                    predicate, influxDBConfig.getBucket(), influxDBConfig.getOrg());
+                chunks++;
+                points += Math.max(0, count);
+                pause(retention.getPauseMs());
+            }
+            from = to;
+        }
+        Map<String, Object> result = deleteResult(chunks, retention.isCountDeleted() ? points : -1, !from.isBefore(stop), begin);
+        result.put("deletedUntil", from.toString());
+        return result;
+    }
+    
+    private Map<String, Object> deleteResult(int chunks, long points, boolean completed, long begin) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("chunks", chunks);
+        result.put("points", points);
+        result.put("completed", completed);
+        result.put("durationMs", System.currentTimeMillis() - begin);
+        return result;
+    }
+    
+    /**
+     * 项目在时间段内最早的数据点时间
+     * 各字段的 _value 类型不同（整数、浮点、布尔、字符串），合并为一张表之前只保留 _time，否则会出现 schema collision
+     */
+    private Instant findEarliest(String projectId, Instant start, Instant stop) {
+        AtomicReference<Instant> earliest = new AtomicReference<>();
+        streamQuery("from(bucket: \"" + escape(influxDBConfig.getBucket()) + "\")\n"
+            + "  |> range(start: time(v: \"" + start + "\"), stop: time(v: \"" + stop + "\"))\n"
+            + "  |> filter(fn: (r) => r.projectId == \"" + escape(projectId) + "\")\n"
+            + "  |> first()\n"
+            + "  |> keep(columns: [\"_time\"])\n"
+            + "  |> group()\n"
+            + "  |> min(column: \"_time\")\n",
+            record -> earliest.set(record.getTime()));
+        return earliest.get();
+    }
+    
+    /**
+     * 已删除到的时间：查找最早数据点时从这里开始，每晚只扫描上次删除之后的时间段；
+     * 尚未记录（首次运行）或 Redis 不可用时从头查找
+     */
+    private Instant deletedUntil(String projectId) {
         try {
-            // InfluxDB 删除数据需要使用 Flux 查询语言
-            // 这里简化处理，实际应该使用 delete API
-            System.out.println("✅ Deleted InfluxDB data older than " + days + " days for project: " + projectId);
-            // TODO: 实现实际的删除逻辑
+            Long until = cacheService.getCount(DELETED_UNTIL_KEY + projectId);
+            return until != null && until > 0 ? Instant.ofEpochMilli(until) : Instant.EPOCH;
         } catch (Exception e) {
-            System.err.println("❌ Failed to delete old InfluxDB data: " + e.getMessage());
+            return Instant.EPOCH;
+        }
+    }
+    
+    private void markDeleted(String projectId, Instant until) {
+        try {
+            cacheService.setCount(DELETED_UNTIL_KEY + projectId, until.toEpochMilli());
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to record InfluxDB retention progress: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 统计时间段内的数据点数
+     */
+    private long countPoints(String projectId, Instant start, Instant stop) {
+        AtomicLong count = new AtomicLong();
+        streamQuery("from(bucket: \"" + escape(influxDBConfig.getBucket()) + "\")\n"
+            + "  |> range(start: time(v: \"" + start + "\"), stop: time(v: \"" + stop + "\"))\n"
+            + "  |> filter(fn: (r) => r.projectId == \"" + escape(projectId) + "\")\n"
+            + "  |> count()\n"
+            + "  |> group()\n"
+            + "  |> sum()\n",
+            record -> {
+                if (record.getValue() instanceof Number) {
+                    count.addAndGet(((Number) record.getValue()).longValue());
+                }
+            });
+        return count.get();
+    }
+    
+    private void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
-
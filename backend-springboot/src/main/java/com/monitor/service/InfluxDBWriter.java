@@ -0,0 +1,288 @@
+package com.monitor.service;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import com.influxdb.exceptions.InfluxException;
+import com.monitor.config.InfluxDBConfig;
+import com.monitor.config.SpoolConfig;
+import com.monitor.util.DiskSpool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InfluxDB 异步批量写入器
+ * 数据点先转为行协议放入有界缓冲区，由后台线程按数量或时间批量刷写，
+ * 请求线程不再等待 InfluxDB 的 HTTP 写入。
+ * 无法写入的数据点（缓冲区已满、重试耗尽或客户端不可用）落入本地磁盘暂存，恢复后按速率回放；
+ * 被 InfluxDB 以 4xx 拒绝的批次（行协议错误、字段类型冲突）直接丢弃，不进入暂存
+ */
+@Service
+@RequiredArgsConstructor
+public class InfluxDBWriter {
+    
+    @Autowired(required = false)
+    private InfluxDBClient influxDBClient;
+    
+    private final InfluxDBConfig influxDBConfig;
+    private final SpoolConfig spoolConfig;
+    
+    private InfluxDBConfig.Write options;
+    private DiskSpool spool;
+    private BlockingQueue<String> buffer;
+    private ScheduledExecutorService executor;
+    private WriteApiBlocking writeApi;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    
+    // 统计指标
+    private final AtomicLong writtenPoints = new AtomicLong();
+    private final AtomicLong droppedPoints = new AtomicLong();
+    private final AtomicLong spooledPoints = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private volatile long lastFlushMillis;
+    
+    @PostConstruct
+    public void init() {
+        options = influxDBConfig.getWrite();
+        if (spoolConfig.isEnabled()) {
+            try {
+                spool = new DiskSpool(Path.of(spoolConfig.getDir(), "influxdb"),
+                    spoolConfig.getSegmentSize(), spoolConfig.getMaxBytes());
+            } catch (Exception e) {
+                System.err.println("⚠️ InfluxDB spool unavailable: " + e.getMessage());
+            }
+        }
+        if (influxDBClient == null) {
+            return;
+        }
+        buffer = new ArrayBlockingQueue<>(options.getBufferLimit());
+        writeApi = influxDBClient.getWriteApiBlocking();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "influxdb-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, options.getFlushInterval(),
+            options.getFlushInterval(), TimeUnit.MILLISECONDS);
+        if (spool != null) {
+            executor.scheduleWithFixedDelay(this::replay, spoolConfig.getReplayInterval(),
+                spoolConfig.getReplayInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 写入数据点（非阻塞）
+     * 客户端不可用或缓冲区已满时转入磁盘暂存
+     */
+    public void write(Point point) {
+        String line = point.toLineProtocol();
+        if (buffer == null || !buffer.offer(line)) {
+            spool(List.of(line));
+            return;
+        }
+        if (buffer.size() >= options.getBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+    
+    /**
+     * 刷写缓冲区：按批次取出并写入，直到缓冲区清空
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        try {
+            List<String> batch = new ArrayList<>(Math.min(options.getBatchSize(), buffer.size()));
+            while (buffer.drainTo(batch, options.getBatchSize()) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (Exception e) {
+            System.err.println("❌ InfluxDB flush error: " + e.getMessage());
+        }
+    }
+    
+    private void writeBatch(List<String> batch) {
+        long start = System.currentTimeMillis();
+        WriteOutcome outcome = writeWithRetry(batch);
+        long elapsed = System.currentTimeMillis() - start;
+        
+        flushCount.incrementAndGet();
+        totalFlushMillis.addAndGet(elapsed);
+        maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+        lastFlushMillis = elapsed;
+        
+        if (outcome == WriteOutcome.WRITTEN) {
+            writtenPoints.addAndGet(batch.size());
+        } else if (outcome == WriteOutcome.REJECTED) {
+            // 数据本身的问题，回放也会再次失败，不能放入暂存阻塞后续数据
+            rejectedBatches.incrementAndGet();
+            droppedPoints.addAndGet(batch.size());
+        } else {
+            failedBatches.incrementAndGet();
+            spool(batch);
+        }
+    }
+    
+    /**
+     * 写入磁盘暂存，暂存不可用或已满时丢弃
+     */
+    private void spool(List<String> lines) {
+        for (String line : lines) {
+            if (spool != null && spool.append(line.getBytes(StandardCharsets.UTF_8))) {
+                spooledPoints.incrementAndGet();
+            } else {
+                droppedPoints.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * 回放磁盘暂存数据，每次最多回放 replayRate * replayInterval 条
+     * InfluxDB 不可用时保留读取位置，等待下次检查；
+     * 被 4xx 拒绝的记录直接确认并计为丢弃，避免一条错误数据永久阻塞暂存
+     */
+    private void replay() {
+        try {
+            if (spool.isEmpty()) {
+                return;
+            }
+            spool.force();
+            int limit = (int) Math.max(1, spoolConfig.getReplayRate() * spoolConfig.getReplayInterval() / 1000);
+            List<byte[]> records = spool.peek(limit);
+            List<String> lines = new ArrayList<>(records.size());
+            for (byte[] record : records) {
+                lines.add(new String(record, StandardCharsets.UTF_8));
+            }
+            if (!lines.isEmpty()) {
+                try {
+                    writeApi.writeRecords(WritePrecision.MS, lines);
+                    writtenPoints.addAndGet(lines.size());
+                } catch (Exception e) {
+                    if (isRetryable(e)) {
+                        throw e;
+                    }
+                    System.err.println("❌ InfluxDB rejected spooled points (" + lines.size() + " points dropped): " + e.getMessage());
+                    rejectedBatches.incrementAndGet();
+                    droppedPoints.addAndGet(lines.size());
+                }
+            }
+            spool.commit(lines.size());
+        } catch (Exception e) {
+            // InfluxDB 仍不可用，下次再试
+        }
+    }
+    
+    /**
+     * 带退避和随机抖动的重试写入
+     * 4xx（429 除外）属于数据本身的问题，不再重试
+     */
+    private WriteOutcome writeWithRetry(List<String> batch) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                writeApi.writeRecords(WritePrecision.MS, batch);
+                return WriteOutcome.WRITTEN;
+            } catch (Exception e) {
+                boolean retryable = isRetryable(e);
+                if (!retryable || attempt >= options.getMaxRetries()) {
+                    System.err.println("❌ InfluxDB batch write failed (" + batch.size() + " points): " + e.getMessage());
+                    return retryable ? WriteOutcome.FAILED : WriteOutcome.REJECTED;
+                }
+                retries.incrementAndGet();
+                long delay = options.getRetryInterval() * (1L << attempt)
+                    + ThreadLocalRandom.current().nextLong(options.getJitterInterval() + 1);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return WriteOutcome.FAILED;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 连接失败、429 和 5xx 可以重试，其余 4xx 是数据本身被拒绝
+     * （InfluxDB 对部分写入返回 400 时，批次中合法的数据点已经写入）
+     */
+    private static boolean isRetryable(Exception e) {
+        if (!(e instanceof InfluxException)) {
+            return true;
+        }
+        int status = ((InfluxException) e).status();
+        return status == 0 || status == 429 || status >= 500;
+    }
+    
+    /**
+     * 关闭前刷写剩余数据
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        if (spool != null) {
+            spool.force();
+        }
+    }
+    
+    /**
+     * 写入统计指标
+     */
+    public Map<String, Object> getMetrics() {
+        long flushes = flushCount.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", buffer != null);
+        metrics.put("queueDepth", buffer != null ? buffer.size() : 0);
+        metrics.put("bufferLimit", options.getBufferLimit());
+        metrics.put("writtenPoints", writtenPoints.get());
+        metrics.put("droppedPoints", droppedPoints.get());
+        metrics.put("spooledPoints", spooledPoints.get());
+        metrics.put("spool", spool != null ? spool.getMetrics() : Map.of());
+        metrics.put("failedBatches", failedBatches.get());
+        metrics.put("rejectedBatches", rejectedBatches.get());
+        metrics.put("retries", retries.get());
+        metrics.put("flushCount", flushes);
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        metrics.put("maxFlushMillis", maxFlushMillis.get());
+        metrics.put("avgFlushMillis", flushes > 0 ? totalFlushMillis.get() / flushes : 0L);
+        return metrics;
+    }
+    
+    private enum WriteOutcome {
+        WRITTEN,
+        // 可重试的失败（InfluxDB 不可用），转入暂存
+        FAILED,
+        // 被 InfluxDB 拒绝（4xx），直接丢弃
+        REJECTED
+    }
+}
@@ -0,0 +1,32 @@
+package com.monitor.service;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 环形缓冲区中的上报事件槽位
+ * 槽位在启动时预分配并循环复用，处理完成后清空引用
+ */
+@Data
+public class IngestEvent {
+    
+    private String projectId;
+    private String category;
+    private Map<String, Object> body;
+    private long receivedAt;
+    
+    public void set(String projectId, String category, Map<String, Object> body) {
+        this.projectId = projectId;
+        this.category = category;
+        this.body = body;
+        this.receivedAt = System.currentTimeMillis();
+    }
+    
+    public void clear() {
+        this.projectId = null;
+        this.category = null;
+        this.body = null;
+        this.receivedAt = 0L;
+    }
+}
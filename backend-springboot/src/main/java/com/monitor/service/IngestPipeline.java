@@ -0,0 +1,229 @@
+package com.monitor.service;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.monitor.config.IngestConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上报事件管道
+ * 控制器只负责解析请求并发布到预分配的环形缓冲区，
+ * 存储消费线程按批次取出事件后写入 MongoDB / InfluxDB / Redis / Elasticsearch
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestPipeline {
+    
+    private final IngestConfig ingestConfig;
+    private final ReportService reportService;
+    
+    private Disruptor<IngestEvent> disruptor;
+    private RingBuffer<IngestEvent> ringBuffer;
+    
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        if (!ingestConfig.isAsync()) {
+            return;
+        }
+        
+        AtomicInteger threadIndex = new AtomicInteger();
+        disruptor = new Disruptor<>(
+            IngestEvent::new,
+            ingestConfig.getRingSize(),
+            r -> {
+                Thread thread = new Thread(r, "ingest-consumer-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            ProducerType.MULTI,
+            createWaitStrategy(ingestConfig.getWaitStrategy())
+        );
+        
+        // 按序号分片，每个消费线程处理自己那一份，彼此并行
+        int consumers = Math.max(1, ingestConfig.getConsumers());
+        StorageHandler[] handlers = new StorageHandler[consumers];
+        for (int i = 0; i < consumers; i++) {
+            handlers[i] = new StorageHandler(i, consumers);
+        }
+        disruptor.handleEventsWith(handlers);
+        disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler());
+        ringBuffer = disruptor.start();
+        
+        System.out.println("✅ Ingest pipeline started: ringSize=" + ingestConfig.getRingSize()
+            + ", consumers=" + consumers + ", waitStrategy=" + ingestConfig.getWaitStrategy());
+    }
+    
+    private WaitStrategy createWaitStrategy(String name) {
+        if (name == null) {
+            return new BlockingWaitStrategy();
+        }
+        switch (name) {
+            case "sleeping":
+                return new SleepingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busy-spin":
+                return new BusySpinWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+    
+    /**
+     * 发布上报事件（非阻塞）
+     * @return 是否已进入缓冲区；未启用异步或缓冲区已满时返回 false，由调用方同步处理
+     */
+    public boolean publish(String projectId, String category, Map<String, Object> body) {
+        if (ringBuffer == null) {
+            return false;
+        }
+        boolean accepted = ringBuffer.tryPublishEvent(
+            (event, sequence, p, c, b) -> event.set(p, c, b), projectId, category, body);
+        if (accepted) {
+            published.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+        }
+        return accepted;
+    }
+    
+    /**
+     * 缓冲区已满时是否直接拒绝（返回 503），而不是在请求线程中同步写入存储
+     */
+    public boolean rejectsOverflow() {
+        return ringBuffer != null && "reject".equalsIgnoreCase(ingestConfig.getOverflow());
+    }
+    
+    public int getRetryAfter() {
+        return ingestConfig.getRetryAfter();
+    }
+    
+    /**
+     * 关闭时等待缓冲区中的事件全部处理完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (disruptor == null) {
+            return;
+        }
+        try {
+            disruptor.shutdown(ingestConfig.getShutdownTimeout(), TimeUnit.MILLISECONDS);
+            System.out.println("✅ Ingest pipeline drained: " + processed.get() + " events processed");
+        } catch (com.lmax.disruptor.TimeoutException e) {
+            System.err.println("⚠️ Ingest pipeline drain timed out, remaining events: "
+                + (ringBuffer.getBufferSize() - ringBuffer.remainingCapacity()));
+            disruptor.halt();
+        }
+    }
+    
+    /**
+     * 管道统计指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", ringBuffer != null);
+        metrics.put("ringSize", ringBuffer != null ? ringBuffer.getBufferSize() : 0);
+        metrics.put("queueDepth", ringBuffer != null ? ringBuffer.getBufferSize() - ringBuffer.remainingCapacity() : 0L);
+        metrics.put("published", published.get());
+        metrics.put("overflow", ingestConfig.getOverflow());
+        metrics.put("processed", processed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("rejected", rejected.get());
+        long batchCount = batches.get();
+        metrics.put("batches", batchCount);
+        metrics.put("avgBatchSize", batchCount > 0 ? (double) processed.get() / batchCount : 0.0);
+        return metrics;
+    }
+    
+    /**
+     * 存储消费者：处理序号对 total 取模等于 ordinal 的事件
+     * 单个事件只写入各存储的内存缓冲，不直接访问数据库，批量写入由下游完成：
+     * InfluxDB 点位进入 InfluxDBWriter 按 batch-size 批量写入，日志进入 BulkIngester，
+     * 错误次数由 ErrorAggregator 合并后批量 upsert，今日计数由 RealtimeCounters 合并后 pipeline 写入 Redis。
+     * 因此这里按事件分发即可，endOfBatch 只用于统计每批处理的事件数
+     */
+    private class StorageHandler implements EventHandler<IngestEvent> {
+        
+        private final int ordinal;
+        private final int total;
+        private int batchSize;
+        
+        StorageHandler(int ordinal, int total) {
+            this.ordinal = ordinal;
+            this.total = total;
+        }
+        
+        @Override
+        public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+            if (sequence % total != ordinal) {
+                countBatch(endOfBatch);
+                return;
+            }
+            batchSize++;
+            try {
+                Map<String, Object> result = reportService.dispatch(event.getProjectId(), event.getCategory(), event.getBody());
+                if (!Boolean.TRUE.equals(result.get("success"))) {
+                    failed.incrementAndGet();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("❌ Ingest " + event.getCategory() + " event failed: " + e.getMessage());
+            } finally {
+                processed.incrementAndGet();
+                event.clear();
+                countBatch(endOfBatch);
+            }
+        }
+        
+        private void countBatch(boolean endOfBatch) {
+            if (endOfBatch && batchSize > 0) {
+                batches.incrementAndGet();
+                batchSize = 0;
+            }
+        }
+    }
+    
+    /**
+     * 记录异常后继续处理后续事件，避免消费线程退出
+     */
+    private static class LoggingExceptionHandler implements ExceptionHandler<IngestEvent> {
+        
+        @Override
+        public void handleEventException(Throwable ex, long sequence, IngestEvent event) {
+            System.err.println("❌ Ingest pipeline error at sequence " + sequence + ": " + ex.getMessage());
+        }
+        
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            System.err.println("❌ Ingest pipeline start error: " + ex.getMessage());
+        }
+        
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            System.err.println("❌ Ingest pipeline shutdown error: " + ex.getMessage());
+        }
+    }
+}
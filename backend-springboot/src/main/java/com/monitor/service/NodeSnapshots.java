@@ -0,0 +1,109 @@
+package com.monitor.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 节点快照同步
+ * 各节点把本地窗口数据编码后整体写入 Redis Hash（{name}:snapshot:{nodeId}，过期时间为 3 个同步周期），
+ * 在节点集合（{name}:nodes）中登记心跳，并读取最近活跃的其他节点的快照，按字段解码合并为一份。
+ * 快照字段以 projectId| 开头；清除项目数据时在 {name}:purged 中登记，各节点同步时据此丢弃本地数据
+ * @param <T> 解码后的快照值
+ */
+final class NodeSnapshots<T> {
+    
+    private final CacheService cacheService;
+    private final String nodesKey;
+    private final String snapshotKey;
+    private final String purgedKey;
+    private final Function<String, T> decoder;
+    private final BinaryOperator<T> merger;
+    
+    /**
+     * 本节点已处理的项目清除：projectId -> 清除时间
+     */
+    private final Map<String, Long> handledPurges = new ConcurrentHashMap<>();
+    
+    /**
+     * @param name Redis 键前缀，如 sketch、api-stats
+     * @param decoder 解码快照字段值
+     * @param merger 把第二个值合并到第一个值并返回第一个值
+     */
+    NodeSnapshots(CacheService cacheService, String name, Function<String, T> decoder, BinaryOperator<T> merger) {
+        this.cacheService = cacheService;
+        this.nodesKey = name + ":nodes";
+        this.snapshotKey = name + ":snapshot:";
+        this.purgedKey = name + ":purged";
+        this.decoder = decoder;
+        this.merger = merger;
+    }
+    
+    /**
+     * 登记项目清除：各节点在下次同步时丢弃该项目的本地数据，
+     * 3 个同步周期内（所有在线节点都已重写快照之前）合并其他节点快照时跳过该项目
+     */
+    void purge(String projectId, long interval) {
+        long now = System.currentTimeMillis();
+        handledPurges.put(projectId, now);
+        cacheService.putHash(purgedKey, projectId, String.valueOf(now), Math.max(1, interval * 3 / 1000));
+    }
+    
+    /**
+     * 先处理其他节点登记的项目清除，再写入本节点快照并加载其他节点快照
+     * @param local 编码本节点的快照字段（在丢弃已清除项目之后调用）
+     * @param discardLocal 丢弃本节点某个项目的数据
+     * @param interval 同步周期（毫秒），超过 3 个周期未同步的节点视为已下线
+     * @return 其他节点快照按字段合并的结果；格式不同或数据损坏的字段忽略
+     */
+    Map<String, T> sync(Supplier<Map<String, String>> local, Consumer<String> discardLocal, long interval) {
+        long since = System.currentTimeMillis() - interval * 3;
+        Set<String> purged = new HashSet<>();
+        try {
+            cacheService.getHash(purgedKey).forEach((projectId, time) -> {
+                long purgedAt = Long.parseLong(String.valueOf(time));
+                if (purgedAt >= since) {
+                    purged.add(String.valueOf(projectId));
+                }
+                if (purgedAt > handledPurges.getOrDefault(String.valueOf(projectId), 0L)) {
+                    discardLocal.accept(String.valueOf(projectId));
+                    handledPurges.put(String.valueOf(projectId), purgedAt);
+                }
+            });
+        } catch (Exception e) {
+            // Redis 不可用时仍然整理本地数据，清除登记在下次同步时处理
+        }
+        handledPurges.values().removeIf(time -> time < since);
+        Map<String, String> fields = local.get();
+        
+        String nodeId = cacheService.getInstanceId();
+        long ttl = Math.max(1, interval * 3 / 1000);
+        cacheService.replaceHash(snapshotKey + nodeId, fields, ttl);
+        cacheService.touchMember(nodesKey, nodeId);
+        
+        Map<String, T> merged = new HashMap<>();
+        for (String node : cacheService.getRecentMembers(nodesKey, since)) {
+            if (node.equals(nodeId)) {
+                continue;
+            }
+            cacheService.getHash(snapshotKey + node).forEach((field, value) -> {
+                String key = String.valueOf(field);
+                if (purged.contains(key.substring(0, Math.max(0, key.indexOf('|'))))) {
+                    return;
+                }
+                try {
+                    merged.merge(key, decoder.apply(String.valueOf(value)), merger);
+                } catch (Exception e) {
+                    // 忽略无法解码的字段
+                }
+            });
+        }
+        return merged;
+    }
+}
@@ -15,6 +15,8 @@ public class PerformanceService {
     
     private final InfluxDBService influxDBService;
     private final CacheService cacheService;
+    private final StatsCache statsCache;
+    private final PerformanceSketches performanceSketches;
     
     /**
      * 上报性能数据
@@ -25,33 +27,105 @@ public class PerformanceService {
         influxDBService.writePerformance(projectId, url, userId, sessionId,
             loadTime, domReady, fcp, lcp, fid, cls, dns, tcp, ttfb);
         
-        // 清除统计缓存
-        cacheService.delete("performance:stats:" + projectId);
-        cacheService.delete("dashboard:" + projectId);
+        // 更新内存中的分位数草图
+        performanceSketches.record(projectId, url, "loadTime", loadTime);
+        performanceSketches.record(projectId, url, "fcp", fcp);
+        performanceSketches.record(projectId, url, "lcp", lcp);
+        performanceSketches.record(projectId, url, "fid", fid);
+        performanceSketches.record(projectId, url, "cls", cls);
+        performanceSketches.record(projectId, url, "ttfb", ttfb);
+        
+        // 标记统计缓存失效（定时合并为一次版本递增）
+        statsCache.markDirty(StatsCache.MODULE_PERFORMANCE, projectId);
     }
     
     /**
      * 获取性能统计
      */
     public Map<String, Object> getStats(String projectId) {
-        // 尝试从缓存获取
-        Map<String, Object> cached = cacheService.get("performance:stats:" + projectId, Map.class);
-        if (cached != null) {
-            return cached;
+        return getStats(projectId, InfluxDBService.DEFAULT_RANGE);
+    }
+    
+    /**
+     * 获取性能统计（指定时间范围：1h / 24h / 7d / 30d）
+     */
+    public Map<String, Object> getStats(String projectId, String range) {
+        Map<String, Object> stats;
+        try {
+            stats = new HashMap<>(loadStats(projectId, range));
+        } catch (Exception e) {
+            System.err.println("Performance stats query failed: " + e.getMessage());
+            stats = emptyStats();
+        }
+        // 最近窗口内的分位数直接取内存草图，不经过缓存
+        stats.put("realtime", performanceSketches.percentiles(projectId, null));
+        return stats;
+    }
+    
+    /**
+     * 获取性能统计（不含实时分位数），查询失败时抛出异常（Dashboard 据此标记数据源不可用）
+     */
+    public Map<String, Object> loadStats(String projectId, String range) {
+        if (!InfluxDBService.isSupportedRange(range)) {
+            range = InfluxDBService.DEFAULT_RANGE;
         }
+        // 默认范围随上报失效，其他范围按 TTL 过期
+        String cacheId = InfluxDBService.DEFAULT_RANGE.equals(range) ? projectId : projectId + ":" + range;
+        String queryRange = range;
+        return statsCache.get(StatsCache.MODULE_PERFORMANCE, cacheId, 60L, () -> computeStats(projectId, queryRange));
+    }
+    
+    /**
+     * 最近窗口内的实时分位数（内存草图，不查询数据库）
+     * @param url 页面，为空时返回项目整体
+     */
+    public Map<String, Object> getRealtimeStats(String projectId, String url, String metric, int limit) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windowSeconds", performanceSketches.getWindowSeconds());
+        stats.put("percentiles", performanceSketches.percentiles(projectId, url));
+        if (url == null || url.isEmpty()) {
+            stats.put("pages", performanceSketches.topPages(projectId, metric, limit));
+        }
+        return stats;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> computeStats(String projectId, String range) {
+        Map<String, Object> result = influxDBService.queryPerformanceStats(projectId, range);
+        Map<String, Map<String, Object>> metrics = (Map<String, Map<String, Object>>) result.get("metrics");
         
-        // TODO: 从 InfluxDB 查询统计数据
+        Map<String, Object> stats = emptyStats();
+        stats.put("avgLoadTime", metricValue(metrics, "loadTime", "mean", 0L));
+        stats.put("avgFCP", metricValue(metrics, "fcp", "mean", 0L));
+        stats.put("avgLCP", metricValue(metrics, "lcp", "mean", 0L));
+        stats.put("avgFID", metricValue(metrics, "fid", "mean", 0L));
+        stats.put("avgCLS", String.format("%.4f", ((Number) metricValue(metrics, "cls", "mean", 0.0)).doubleValue()));
+        stats.put("percentiles", metrics);
+        stats.put("pages", result.get("pages"));
+        stats.put("timeStats", result.get("timeStats"));
+        stats.put("range", result.get("range"));
+        stats.put("window", result.get("window"));
+        // 数据来源层，读取降采样层时 dataUntil 为数据截止时间
+        stats.put("tier", result.get("tier"));
+        stats.put("dataUntil", result.get("dataUntil"));
+        return stats;
+    }
+    
+    private Object metricValue(Map<String, Map<String, Object>> metrics, String field, String stat, Object defaultValue) {
+        Map<String, Object> values = metrics != null ? metrics.get(field) : null;
+        return values != null && values.get(stat) != null ? values.get(stat) : defaultValue;
+    }
+    
+    private Map<String, Object> emptyStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("avgLoadTime", 0L);
         stats.put("avgFCP", 0L);
         stats.put("avgLCP", 0L);
         stats.put("avgFID", 0L);
         stats.put("avgCLS", "0.0000");
+        stats.put("percentiles", new HashMap<>());
+        stats.put("pages", new java.util.ArrayList<>());
         stats.put("timeStats", new HashMap<>());
-        
-        // 缓存结果
-        cacheService.set("performance:stats:" + projectId, stats, 60L);
-        
         return stats;
     }
 }
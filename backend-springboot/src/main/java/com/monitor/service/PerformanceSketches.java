@@ -0,0 +1,304 @@
+package com.monitor.service;
+
+import com.monitor.util.QuantileSketch;
+import com.monitor.util.UrlNormalizer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Web Vitals 分位数草图
+ * 按 (项目, 归一化 URL, 指标) 在内存中维护滚动时间窗口内的可合并分位数草图，
+ * 每个窗口由若干时间槽组成，查询时合并有效槽；各节点定时把本地草图快照写入 Redis，
+ * 并读取其他节点的快照合并，p75/p95 查询无需访问数据库
+ */
+@Service
+@RequiredArgsConstructor
+public class PerformanceSketches {
+    
+    public static final List<String> METRICS = List.of("loadTime", "fcp", "lcp", "fid", "cls", "ttfb");
+    
+    /**
+     * 项目整体（不区分页面）
+     */
+    public static final String ALL_PAGES = "*";
+    
+    /**
+     * 页面数超过上限后归入该页面
+     */
+    public static final String OTHER_PAGES = "__other__";
+    
+    private final CacheService cacheService;
+    
+    @Value("${sketch.relative-accuracy:0.02}")
+    private double relativeAccuracy;
+    
+    @Value("${sketch.max-bins:2048}")
+    private int maxBins;
+    
+    @Value("${sketch.slot-seconds:300}")
+    private long slotSeconds;
+    
+    @Value("${sketch.slots:12}")
+    private int slots;
+    
+    @Value("${sketch.max-pages:500}")
+    private int maxPages;
+    
+    @Value("${sketch.snapshot-interval:30000}")
+    private long snapshotInterval;
+    
+    /**
+     * key：projectId|metric|url
+     */
+    private final ConcurrentHashMap<String, RollingSketch> sketches = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> pagesByProject = new ConcurrentHashMap<>();
+    
+    /**
+     * 其他节点的快照（已合并），由定时任务整体替换
+     */
+    private volatile Map<String, QuantileSketch> remote = new HashMap<>();
+    
+    /**
+     * Redis 中的节点快照（sketch:snapshot:{nodeId}），精度配置不同的草图合并时失败，整个字段忽略
+     */
+    private NodeSnapshots<QuantileSketch> snapshots;
+    
+    @PostConstruct
+    public void init() {
+        snapshots = new NodeSnapshots<>(cacheService, "sketch", QuantileSketch::fromBase64, (a, b) -> {
+            a.merge(b);
+            return a;
+        });
+    }
+    
+    /**
+     * 滚动窗口：slots 个时间槽，每槽 slotSeconds 秒
+     */
+    private class RollingSketch {
+        private final QuantileSketch[] buckets = new QuantileSketch[slots];
+        private final long[] epochs = new long[slots];
+        
+        synchronized void add(double value, long now) {
+            long epoch = now / (slotSeconds * 1000);
+            int index = (int) (epoch % slots);
+            if (buckets[index] == null) {
+                buckets[index] = new QuantileSketch(relativeAccuracy, maxBins);
+            } else if (epochs[index] != epoch) {
+                buckets[index].clear();
+            }
+            epochs[index] = epoch;
+            buckets[index].add(value);
+        }
+        
+        synchronized QuantileSketch merged(long now) {
+            long epoch = now / (slotSeconds * 1000);
+            QuantileSketch result = new QuantileSketch(relativeAccuracy, maxBins);
+            for (int i = 0; i < slots; i++) {
+                if (buckets[i] != null && epoch - epochs[i] < slots) {
+                    result.merge(buckets[i]);
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * 记录一个指标值，同时计入项目整体和页面维度
+     */
+    public void record(String projectId, String url, String metric, Number value) {
+        if (value == null || projectId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double v = value.doubleValue();
+        sketch(projectId, metric, ALL_PAGES).add(v, now);
+        sketch(projectId, metric, pageOf(projectId, url)).add(v, now);
+    }
+    
+    /**
+     * 各指标的分位数
+     * @param url 页面，为空时返回项目整体
+     */
+    public Map<String, Object> percentiles(String projectId, String url) {
+        String page = url == null || url.isEmpty() ? ALL_PAGES : UrlNormalizer.normalize(url);
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new HashMap<>();
+        for (String metric : METRICS) {
+            QuantileSketch sketch = mergedSketch(key(projectId, metric, page), now);
+            if (!sketch.isEmpty()) {
+                result.put(metric, summarize(metric, sketch));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 按采样数排序的页面分位数
+     */
+    public List<Map<String, Object>> topPages(String projectId, String metric, int limit) {
+        long now = System.currentTimeMillis();
+        // 本地页面和其他节点快照中的页面
+        Set<String> candidates = new HashSet<>(pagesByProject.getOrDefault(projectId, Set.of()));
+        String prefix = projectId + "|" + metric + "|";
+        for (String key : remote.keySet()) {
+            if (key.startsWith(prefix)) {
+                candidates.add(key.substring(prefix.length()));
+            }
+        }
+        candidates.remove(ALL_PAGES);
+        
+        List<Map<String, Object>> pages = new ArrayList<>();
+        for (String page : candidates) {
+            QuantileSketch sketch = mergedSketch(key(projectId, metric, page), now);
+            if (!sketch.isEmpty()) {
+                Map<String, Object> item = summarize(metric, sketch);
+                item.put("url", page);
+                pages.add(item);
+            }
+        }
+        pages.sort(Comparator.comparingLong((Map<String, Object> p) -> (Long) p.get("count")).reversed());
+        return pages.size() > limit ? new ArrayList<>(pages.subList(0, limit)) : pages;
+    }
+    
+    /**
+     * 窗口长度（秒）
+     */
+    public long getWindowSeconds() {
+        return slotSeconds * slots;
+    }
+    
+    /**
+     * 写入本节点快照并加载其他节点快照
+     */
+    @Scheduled(fixedDelayString = "${sketch.snapshot-interval:30000}")
+    public void snapshot() {
+        try {
+            remote = snapshots.sync(this::localSnapshot, this::discardLocal, snapshotInterval);
+        } catch (Exception e) {
+            System.err.println("⚠️ Sketch snapshot sync failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 丢弃项目的草图（清除项目数据时调用），其他节点在下次同步时丢弃各自的草图
+     */
+    public void discard(String projectId) {
+        discardLocal(projectId);
+        String prefix = projectId + "|";
+        Map<String, QuantileSketch> others = new HashMap<>(remote);
+        others.keySet().removeIf(key -> key.startsWith(prefix));
+        remote = others;
+        snapshots.purge(projectId, snapshotInterval);
+    }
+    
+    private void discardLocal(String projectId) {
+        String prefix = projectId + "|";
+        sketches.keySet().removeIf(key -> key.startsWith(prefix));
+        pagesByProject.remove(projectId);
+    }
+    
+    private Map<String, String> localSnapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, String> fields = new HashMap<>();
+        sketches.forEach((key, rolling) -> {
+            QuantileSketch sketch = rolling.merged(now);
+            if (sketch.isEmpty()) {
+                // 窗口内无数据，释放内存
+                sketches.remove(key, rolling);
+                removePage(key);
+            } else {
+                fields.put(key, sketch.toBase64());
+            }
+        });
+        return fields;
+    }
+    
+    /**
+     * 草图指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("localSketches", sketches.size());
+        metrics.put("remoteSketches", remote.size());
+        metrics.put("projects", pagesByProject.size());
+        metrics.put("windowSeconds", getWindowSeconds());
+        return metrics;
+    }
+    
+    private RollingSketch sketch(String projectId, String metric, String page) {
+        return sketches.computeIfAbsent(key(projectId, metric, page), k -> new RollingSketch());
+    }
+    
+    private QuantileSketch mergedSketch(String key, long now) {
+        RollingSketch local = sketches.get(key);
+        QuantileSketch result = local != null ? local.merged(now) : new QuantileSketch(relativeAccuracy, maxBins);
+        QuantileSketch other = remote.get(key);
+        if (other != null && other.getRelativeAccuracy() == relativeAccuracy) {
+            result.merge(other);
+        }
+        return result;
+    }
+    
+    /**
+     * 归一化页面并限制每个项目的页面数
+     */
+    private String pageOf(String projectId, String url) {
+        String page = UrlNormalizer.normalize(url);
+        Set<String> pages = pagesByProject.computeIfAbsent(projectId, k -> ConcurrentHashMap.newKeySet());
+        if (pages.contains(page)) {
+            return page;
+        }
+        if (pages.size() >= maxPages) {
+            pages.add(OTHER_PAGES);
+            return OTHER_PAGES;
+        }
+        pages.add(page);
+        return page;
+    }
+    
+    private void removePage(String key) {
+        String[] parts = key.split("\\|", 3);
+        if (parts.length == 3 && !ALL_PAGES.equals(parts[2])) {
+            String projectId = parts[0];
+            String page = parts[2];
+            boolean inUse = METRICS.stream().anyMatch(metric -> sketches.containsKey(key(projectId, metric, page)));
+            Set<String> pages = pagesByProject.get(projectId);
+            if (!inUse && pages != null) {
+                pages.remove(page);
+            }
+        }
+    }
+    
+    private Map<String, Object> summarize(String metric, QuantileSketch sketch) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("count", sketch.getCount());
+        stats.put("p50", round(metric, sketch.quantile(0.5)));
+        stats.put("p75", round(metric, sketch.quantile(0.75)));
+        stats.put("p95", round(metric, sketch.quantile(0.95)));
+        stats.put("mean", round(metric, sketch.getMean()));
+        return stats;
+    }
+    
+    private Object round(String metric, double value) {
+        if ("cls".equals(metric)) {
+            return Math.round(value * 10000) / 10000.0;
+        }
+        return Math.round(value);
+    }
+    
+    private String key(String projectId, String metric, String page) {
+        return projectId + "|" + metric + "|" + page;
+    }
+}
@@ -0,0 +1,193 @@
+package com.monitor.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 实时计数缓冲
+ * 今日错误数、PV 在本地 LongAdder 中累加，UV 先收集到本地集合，
+ * 定时以一次 pipeline 事务（MULTI/INCRBY/PFADD/EXPIREAT/EXEC）写入 Redis。
+ * 读取时返回 Redis 中的值加上本地尚未写入的增量
+ */
+@Service
+@RequiredArgsConstructor
+public class RealtimeCounters {
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HllBuffer> hllBuffers = new ConcurrentHashMap<>();
+    
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    
+    /**
+     * 计数器：total 只增不减，flushed 为已写入 Redis 的部分，仅由刷写线程修改
+     */
+    private static class Counter {
+        final LongAdder total = new LongAdder();
+        final Instant expireAt;
+        volatile long flushed;
+        
+        Counter(Instant expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+    
+    private static class HllBuffer {
+        final Set<String> values = ConcurrentHashMap.newKeySet();
+        final Instant expireAt;
+        
+        HllBuffer(Instant expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+    
+    /**
+     * 计数加一
+     * @param key 完整的 Redis key
+     * @param expireAt 写入 Redis 时设置的过期时间
+     */
+    public void increment(String key, Instant expireAt) {
+        counters.computeIfAbsent(key, k -> new Counter(expireAt)).total.increment();
+    }
+    
+    /**
+     * 本地尚未写入 Redis 的增量
+     */
+    public long pending(String key) {
+        Counter counter = counters.get(key);
+        return counter != null ? counter.total.sum() - counter.flushed : 0L;
+    }
+    
+    /**
+     * 缓冲 HyperLogLog 元素
+     */
+    public void pfAdd(String key, String value, Instant expireAt) {
+        hllBuffers.computeIfAbsent(key, k -> new HllBuffer(expireAt)).values.add(value);
+    }
+    
+    /**
+     * 丢弃匹配的本地计数（清除项目数据时使用）
+     */
+    public synchronized void discard(Predicate<String> keyFilter) {
+        counters.keySet().removeIf(keyFilter);
+        hllBuffers.keySet().removeIf(keyFilter);
+    }
+    
+    /**
+     * 将本地增量写入 Redis
+     */
+    @Scheduled(fixedDelayString = "${realtime-counters.flush-interval:1000}")
+    public synchronized void flush() {
+        Map<String, Long> deltas = new HashMap<>();
+        Map<String, Instant> expires = new HashMap<>();
+        counters.forEach((key, counter) -> {
+            long delta = counter.total.sum() - counter.flushed;
+            if (delta > 0) {
+                deltas.put(key, delta);
+                expires.put(key, counter.expireAt);
+            }
+        });
+        
+        Map<String, List<String>> hllValues = new HashMap<>();
+        hllBuffers.forEach((key, buffer) -> {
+            List<String> values = new ArrayList<>();
+            for (String value : buffer.values) {
+                if (buffer.values.remove(value)) {
+                    values.add(value);
+                }
+            }
+            if (!values.isEmpty()) {
+                hllValues.put(key, values);
+                expires.put(key, buffer.expireAt);
+            }
+        });
+        
+        if (!deltas.isEmpty() || !hllValues.isEmpty()) {
+            try {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings({"unchecked", "rawtypes"})
+                    public Object execute(RedisOperations operations) throws DataAccessException {
+                        operations.multi();
+                        deltas.forEach((key, delta) -> operations.opsForValue().increment(key, delta));
+                        hllValues.forEach((key, values) -> operations.opsForHyperLogLog().add(key, values.toArray()));
+                        expires.forEach((key, expireAt) -> operations.expireAt(key, expireAt));
+                        operations.exec();
+                        return null;
+                    }
+                });
+                deltas.forEach((key, delta) -> counters.get(key).flushed += delta);
+                flushes.incrementAndGet();
+                commands.addAndGet(deltas.size() + hllValues.size() + expires.size() + 2L);
+            } catch (Exception e) {
+                // 写入失败：计数增量保留在本地，UV 元素放回缓冲区，下个周期重试
+                failedFlushes.incrementAndGet();
+                hllValues.forEach((key, values) ->
+                    hllBuffers.computeIfAbsent(key, k -> new HllBuffer(expires.get(key))).values.addAll(values));
+                System.err.println("⚠️ Realtime counter flush failed: " + e.getMessage());
+                return;
+            }
+        }
+        
+        evictExpired();
+    }
+    
+    /**
+     * 移除已过期且已全部写入的计数器（前一天的 key）
+     */
+    private void evictExpired() {
+        Instant now = Instant.now();
+        counters.entrySet().removeIf(entry -> entry.getValue().expireAt.isBefore(now)
+            && entry.getValue().total.sum() == entry.getValue().flushed);
+        hllBuffers.entrySet().removeIf(entry -> entry.getValue().expireAt.isBefore(now)
+            && entry.getValue().values.isEmpty());
+    }
+    
+    /**
+     * 计数缓冲指标
+     */
+    public Map<String, Object> getMetrics() {
+        long pendingDelta = 0;
+        for (Counter counter : counters.values()) {
+            pendingDelta += counter.total.sum() - counter.flushed;
+        }
+        long pendingValues = 0;
+        for (HllBuffer buffer : hllBuffers.values()) {
+            pendingValues += buffer.values.size();
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("counterKeys", counters.size());
+        metrics.put("hllKeys", hllBuffers.size());
+        metrics.put("pendingDelta", pendingDelta);
+        metrics.put("pendingHllValues", pendingValues);
+        metrics.put("flushes", flushes.get());
+        metrics.put("failedFlushes", failedFlushes.get());
+        metrics.put("commands", commands.get());
+        return metrics;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,228 @@
+package com.monitor.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 上报处理服务
+ * 统一处理错误、性能、行为、接口四类上报事件，供单条上报和批量上报共用
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportService {
+    
+    public static final String CATEGORY_ERROR = "error";
+    public static final String CATEGORY_PERFORMANCE = "performance";
+    public static final String CATEGORY_BEHAVIOR = "behavior";
+    public static final String CATEGORY_API = "api";
+    
+    private final ErrorService errorService;
+    private final PerformanceService performanceService;
+    private final BehaviorService behaviorService;
+    private final ApiMonitorService apiMonitorService;
+    private final ElasticsearchService elasticsearchService;
+    
+    /**
+     * 是否为支持的事件类别
+     */
+    public static boolean isKnownCategory(String category) {
+        return CATEGORY_ERROR.equals(category) || CATEGORY_PERFORMANCE.equals(category)
+            || CATEGORY_BEHAVIOR.equals(category) || CATEGORY_API.equals(category);
+    }
+    
+    /**
+     * 按事件类别分发上报
+     * @param category 事件类别：error / performance / behavior / api
+     * @return 处理结果，包含 success 字段
+     */
+    public Map<String, Object> dispatch(String projectId, String category, Map<String, Object> body) {
+        if (category == null) {
+            return Map.of("success", false, "message", "缺少事件类别");
+        }
+        switch (category) {
+            case CATEGORY_ERROR:
+                return reportError(projectId, body);
+            case CATEGORY_PERFORMANCE:
+                return reportPerformance(projectId, body);
+            case CATEGORY_BEHAVIOR:
+                return reportBehavior(projectId, body);
+            case CATEGORY_API:
+                return reportApi(projectId, body);
+            default:
+                return Map.of("success", false, "message", "未知事件类别: " + category);
+        }
+    }
+    
+    /**
+     * 处理错误上报
+     */
+    public Map<String, Object> reportError(String projectId, Map<String, Object> body) {
+        String errorHash = errorService.report(
+            projectId,
+            (String) body.getOrDefault("type", "js"),
+            (String) body.getOrDefault("message", "Unknown error"),
+            (String) body.get("stack"),
+            (String) body.get("url"),
+            body.get("line") != null ? ((Number) body.get("line")).intValue() : null,
+            body.get("col") != null ? ((Number) body.get("col")).intValue() : null,
+            (String) body.get("userAgent"),
+            (String) body.get("userId"),
+            (String) body.get("sessionId")
+        );
+        
+        // 异步写入 Elasticsearch（不阻塞主流程）
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("projectId", projectId);
+        logData.put("type", "error");
+        logData.put("userId", body.get("userId"));
+        logData.put("sessionId", body.get("sessionId"));
+        logData.put("url", body.get("url"));
+        logData.put("timestamp", new java.util.Date().toInstant().toString());
+        logData.put("errorType", body.getOrDefault("type", "js"));
+        logData.put("errorMessage", body.getOrDefault("message", "Unknown error"));
+        logData.put("stack", body.get("stack"));
+        logData.put("line", body.get("line"));
+        logData.put("col", body.get("col"));
+        logData.put("userAgent", body.get("userAgent"));
+        logData.put("message", body.getOrDefault("message", "Unknown error"));
+        writeLog(logData);
+        
+        return Map.of("success", true, "errorHash", errorHash);
+    }
+    
+    /**
+     * 处理性能上报
+     */
+    public Map<String, Object> reportPerformance(String projectId, Map<String, Object> body) {
+        performanceService.report(
+            projectId,
+            (String) body.getOrDefault("url", ""),
+            (String) body.get("userId"),
+            (String) body.get("sessionId"),
+            body.get("loadTime") != null ? ((Number) body.get("loadTime")).longValue() : null,
+            body.get("domReady") != null ? ((Number) body.get("domReady")).longValue() : null,
+            body.get("fcp") != null ? ((Number) body.get("fcp")).longValue() : null,
+            body.get("lcp") != null ? ((Number) body.get("lcp")).longValue() : null,
+            body.get("fid") != null ? ((Number) body.get("fid")).longValue() : null,
+            body.get("cls") != null ? ((Number) body.get("cls")).doubleValue() : null,
+            body.get("dns") != null ? ((Number) body.get("dns")).longValue() : null,
+            body.get("tcp") != null ? ((Number) body.get("tcp")).longValue() : null,
+            body.get("ttfb") != null ? ((Number) body.get("ttfb")).longValue() : null
+        );
+        
+        // 异步写入 Elasticsearch（不阻塞主流程）
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("projectId", projectId);
+        logData.put("type", "performance");
+        logData.put("userId", body.get("userId"));
+        logData.put("sessionId", body.get("sessionId"));
+        logData.put("url", body.getOrDefault("url", ""));
+        logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
+        logData.put("loadTime", body.get("loadTime"));
+        logData.put("domReady", body.get("domReady"));
+        logData.put("fcp", body.get("fcp"));
+        logData.put("lcp", body.get("lcp"));
+        logData.put("fid", body.get("fid"));
+        logData.put("cls", body.get("cls"));
+        logData.put("dns", body.get("dns"));
+        logData.put("tcp", body.get("tcp"));
+        logData.put("ttfb", body.get("ttfb"));
+        logData.put("message", "Performance metrics: loadTime=" + body.getOrDefault("loadTime", 0) + "ms");
+        writeLog(logData);
+        
+        return Map.of("success", true);
+    }
+    
+    /**
+     * 处理用户行为上报
+     */
+    public Map<String, Object> reportBehavior(String projectId, Map<String, Object> body) {
+        String type = (String) body.getOrDefault("type", "pv");
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) body.get("data");
+        
+        behaviorService.report(
+            projectId,
+            type,
+            (String) body.getOrDefault("url", ""),
+            (String) body.get("path"),
+            (String) body.get("userId"),
+            (String) body.get("sessionId")
+        );
+        
+        // 异步写入 Elasticsearch（不阻塞主流程）
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("projectId", projectId);
+        logData.put("type", "behavior");
+        logData.put("userId", body.get("userId"));
+        logData.put("sessionId", body.get("sessionId"));
+        logData.put("url", body.getOrDefault("url", ""));
+        logData.put("path", body.get("path"));
+        logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
+        logData.put("behaviorType", type);
+        
+        String message;
+        if ("route-change".equals(type)) {
+            message = "Route change: " + (data != null ? data.get("from") : "") + " -> " + (data != null ? data.get("to") : "");
+        } else if ("custom".equals(type)) {
+            message = "Custom event: " + (data != null ? data.get("eventName") : "");
+        } else {
+            message = type;
+        }
+        logData.put("message", message);
+        
+        if (data != null) {
+            logData.putAll(data);
+        }
+        writeLog(logData);
+        
+        return Map.of("success", true);
+    }
+    
+    /**
+     * 处理接口监控上报
+     */
+    public Map<String, Object> reportApi(String projectId, Map<String, Object> body) {
+        apiMonitorService.report(
+            projectId,
+            (String) body.getOrDefault("url", ""),
+            (String) body.getOrDefault("method", "GET"),
+            body.get("status") != null ? ((Number) body.get("status")).intValue() : null,
+            body.get("responseTime") != null ? ((Number) body.get("responseTime")).longValue() : null,
+            (String) body.get("userId"),
+            (String) body.get("sessionId"),
+            body.get("requestData"),
+            body.get("responseData")
+        );
+        
+        // 异步写入 Elasticsearch（不阻塞主流程）
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("projectId", projectId);
+        logData.put("type", "api");
+        logData.put("userId", body.get("userId"));
+        logData.put("sessionId", body.get("sessionId"));
+        logData.put("url", body.getOrDefault("url", ""));
+        logData.put("timestamp", body.getOrDefault("timestamp", new java.util.Date().toInstant().toString()));
+        logData.put("method", body.getOrDefault("method", "GET"));
+        logData.put("status", body.get("status"));
+        logData.put("responseTime", body.get("responseTime"));
+        logData.put("message", body.getOrDefault("method", "GET") + " " + body.getOrDefault("url", "") + " - " + body.getOrDefault("status", 0) + " (" + body.getOrDefault("responseTime", 0) + "ms)");
+        logData.put("requestData", body.get("requestData"));
+        logData.put("responseData", body.get("responseData"));
+        writeLog(logData);
+        
+        return Map.of("success", true);
+    }
+    
+    private void writeLog(Map<String, Object> logData) {
+        try {
+            elasticsearchService.writeLog(logData);
+        } catch (Exception e) {
+            System.out.println("⚠️ Elasticsearch write failed (non-blocking): " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.monitor.service;
+
+import com.influxdb.client.InfluxDBClient;
+import com.monitor.config.InfluxDBConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * InfluxDB 降采样
+ * 定时把原始数据汇总为 1m / 1h / 1d 三层（measurement 后缀 _1m / _1h / _1d），
+ * 1m 层由原始数据生成，1h 层由 1m 层生成，1d 层由 1h 层生成；每层的处理进度（水位）保存在 Redis，
+ * 多实例通过分布式锁保证同一时间只有一个节点执行。查询按范围和步长路由到满足条件的最粗一层（步长不小于 1h 时）
+ */
+@Service
+@RequiredArgsConstructor
+public class RollupService {
+    
+    private static final String LOCK_KEY = "rollup:lock";
+    private static final String WATERMARK_KEY = "rollup:watermark:";
+    private static final String SINCE_KEY = "rollup:since:";
+    
+    /**
+     * 参与降采样的原始 measurement 及数值字段
+     */
+    public static final Map<String, List<String>> SOURCES = Map.of(
+        "performance", List.of("loadTime", "domReady", "fcp", "lcp", "fid", "cls", "dns", "tcp", "ttfb"),
+        "api_monitor", List.of("responseTime", "success"),
+        "behavior", List.of("count"),
+        "error_count", List.of("count")
+    );
+    
+    /**
+     * 降采样层级
+     */
+    public enum Tier {
+        RAW("", "", 0),
+        MINUTE("_1m", "1m", 60),
+        HOUR("_1h", "1h", 3600),
+        DAY("_1d", "1d", 86400);
+        
+        private final String suffix;
+        private final String every;
+        private final long seconds;
+        
+        Tier(String suffix, String every, long seconds) {
+            this.suffix = suffix;
+            this.every = every;
+            this.seconds = seconds;
+        }
+        
+        public String getSuffix() {
+            return suffix;
+        }
+        
+        public String getEvery() {
+            return every;
+        }
+        
+        public long getSeconds() {
+            return seconds;
+        }
+        
+        /**
+         * 生成该层的数据来源层
+         */
+        Tier source() {
+            return values()[ordinal() - 1];
+        }
+    }
+    
+    private static final List<Tier> ROLLUP_TIERS = List.of(Tier.MINUTE, Tier.HOUR, Tier.DAY);
+    
+    private final InfluxDBClient influxDBClient;
+    private final CacheService cacheService;
+    private final InfluxDBConfig influxDBConfig;
+    
+    // 本地缓存的水位和起始时间（毫秒），由定时任务刷新，查询路由时不访问 Redis
+    private final Map<Tier, Long> watermarks = new ConcurrentHashMap<>();
+    private final Map<Tier, Long> since = new ConcurrentHashMap<>();
+    private final Map<Tier, Long> lastDuration = new ConcurrentHashMap<>();
+    private final Map<Tier, Long> failures = new ConcurrentHashMap<>();
+    private final AtomicLong lockLost = new AtomicLong();
+    
+    /**
+     * 执行降采样（各层依次推进水位）
+     */
+    @Scheduled(initialDelayString = "${influxdb.rollup.interval:60000}", fixedDelayString = "${influxdb.rollup.interval:60000}")
+    public void rollup() {
+        InfluxDBConfig.Rollup config = influxDBConfig.getRollup();
+        if (!config.isEnabled() || influxDBClient == null) {
+            return;
+        }
+        try {
+            // 锁至少覆盖一次查询的超时时间，每次查询前续期，任务耗时不受锁的过期时间限制
+            long lockSeconds = Math.max(60, Math.max(config.getInterval() * 5, influxDBConfig.getQuery().getTimeout() * 2) / 1000);
+            String token = cacheService.tryLock(LOCK_KEY, lockSeconds);
+            if (token != null) {
+                try {
+                    for (Tier tier : ROLLUP_TIERS) {
+                        if (!advance(tier, config, token, lockSeconds)) {
+                            break;
+                        }
+                    }
+                } finally {
+                    cacheService.unlock(LOCK_KEY, token);
+                }
+            }
+            refreshWatermarks();
+        } catch (Exception e) {
+            System.err.println("⚠️ Rollup failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 选择满足步长且已覆盖查询范围的最粗一层
+     * 步长小于 1h（1h / 24h 范围）时使用原始数据：1m 层的分位数只是近似值，且水位之后的数据尚未汇总，
+     * 原始数据量在这些范围内也不大；只有 7d / 30d 这类长范围读取降采样层
+     * @param rangeSeconds 查询范围（秒）
+     * @param stepSeconds 聚合步长（秒）
+     */
+    public Tier route(long rangeSeconds, long stepSeconds) {
+        if (!influxDBConfig.getRollup().isEnabled() || stepSeconds < Tier.HOUR.getSeconds()) {
+            return Tier.RAW;
+        }
+        long rangeStart = System.currentTimeMillis() - rangeSeconds * 1000;
+        for (int i = ROLLUP_TIERS.size() - 1; i >= 0; i--) {
+            Tier tier = ROLLUP_TIERS.get(i);
+            Long tierSince = since.get(tier);
+            if (tier.getSeconds() <= stepSeconds && tierSince != null && watermarks.containsKey(tier)
+                && tierSince <= rangeStart + tier.getSeconds() * 1000) {
+                return tier;
+            }
+        }
+        return Tier.RAW;
+    }
+    
+    /**
+     * 该层数据已处理到的时间（毫秒），原始数据返回当前时间
+     */
+    public long getWatermark(Tier tier) {
+        return tier == Tier.RAW ? System.currentTimeMillis() : watermarks.getOrDefault(tier, 0L);
+    }
+    
+    /**
+     * 降采样指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", influxDBConfig.getRollup().isEnabled());
+        metrics.put("lockLost", lockLost.get());
+        for (Tier tier : ROLLUP_TIERS) {
+            Map<String, Object> stats = new HashMap<>();
+            Long watermark = watermarks.get(tier);
+            stats.put("watermark", watermark != null ? Instant.ofEpochMilli(watermark).toString() : null);
+            stats.put("lagSeconds", watermark != null ? (System.currentTimeMillis() - watermark) / 1000 : null);
+            stats.put("since", since.containsKey(tier) ? Instant.ofEpochMilli(since.get(tier)).toString() : null);
+            stats.put("lastDurationMs", lastDuration.getOrDefault(tier, 0L));
+            stats.put("failures", failures.getOrDefault(tier, 0L));
+            metrics.put(tier.getEvery(), stats);
+        }
+        return metrics;
+    }
+    
+    /**
+     * 推进一层的水位：每次最多处理 maxWindows 个窗口，追赶历史数据时连续执行多次
+     * 每次查询前续期锁，锁已丢失（过期后被其他节点获取）时停止本次任务
+     * @return 是否仍持有锁
+     */
+    private boolean advance(Tier tier, InfluxDBConfig.Rollup config, String token, long lockSeconds) {
+        long step = tier.getSeconds() * 1000;
+        long limit = limitOf(tier, config);
+        Long watermark = readLong(WATERMARK_KEY + tier.getEvery());
+        if (watermark == null) {
+            // 首次运行：从回溯时间开始，记录该层数据的起始时间
+            watermark = align(System.currentTimeMillis() - config.getBackfill(), step);
+            Long sourceSince = tier.source() == Tier.RAW ? null : readLong(SINCE_KEY + tier.source().getEvery());
+            if (sourceSince != null) {
+                watermark = Math.max(watermark, align(sourceSince, step));
+            }
+            cacheService.setCount(SINCE_KEY + tier.getEvery(), watermark);
+        }
+        
+        for (int chunk = 0; chunk < config.getMaxChunksPerRun() && watermark < limit; chunk++) {
+            if (!cacheService.renewLock(LOCK_KEY, token, lockSeconds)) {
+                lockLost.incrementAndGet();
+                System.err.println("⚠️ Rollup lock lost, stopping at " + tier.getEvery() + " " + Instant.ofEpochMilli(watermark));
+                return false;
+            }
+            long stop = Math.min(limit, watermark + step * config.getMaxWindows());
+            long begin = System.currentTimeMillis();
+            try {
+                execute(buildRollupScript(tier, watermark, stop));
+            } catch (Exception e) {
+                failures.merge(tier, 1L, Long::sum);
+                System.err.println("⚠️ Rollup " + tier.getEvery() + " failed at " + Instant.ofEpochMilli(watermark) + ": " + e.getMessage());
+                return true;
+            }
+            lastDuration.put(tier, System.currentTimeMillis() - begin);
+            watermark = stop;
+            cacheService.setCount(WATERMARK_KEY + tier.getEvery(), watermark);
+        }
+        return true;
+    }
+    
+    /**
+     * 各层可处理到的时间：1m 层为当前时间减去延迟容忍，上层不超过下层水位
+     */
+    private long limitOf(Tier tier, InfluxDBConfig.Rollup config) {
+        long step = tier.getSeconds() * 1000;
+        if (tier.source() == Tier.RAW) {
+            return align(System.currentTimeMillis() - config.getLag(), step);
+        }
+        Long sourceWatermark = readLong(WATERMARK_KEY + tier.source().getEvery());
+        return sourceWatermark == null ? 0 : align(sourceWatermark, step);
+    }
+    
+    private void refreshWatermarks() {
+        for (Tier tier : ROLLUP_TIERS) {
+            Long watermark = readLong(WATERMARK_KEY + tier.getEvery());
+            Long tierSince = readLong(SINCE_KEY + tier.getEvery());
+            if (watermark != null && tierSince != null) {
+                watermarks.put(tier, watermark);
+                since.put(tier, tierSince);
+            }
+        }
+    }
+    
+    /**
+     * 降采样脚本
+     * 1m 层：按窗口计算 count / sum / max，性能指标和接口耗时额外计算 p50 / p75 / p95；
+     * 上层：count / sum 求和，max 取最大值，分位数取下层分位数的均值（近似值）
+     */
+    private String buildRollupScript(Tier tier, long start, long stop) {
+        String bucket = escape(influxDBConfig.getBucket());
+        String range = "  |> range(start: time(v: \"" + Instant.ofEpochMilli(start) + "\"), stop: time(v: \"" + Instant.ofEpochMilli(stop) + "\"))\n";
+        String window = "every: " + tier.getEvery() + ", timeSrc: \"_start\", createEmpty: false";
+        
+        StringBuilder flux = new StringBuilder("import \"strings\"\n");
+        if (tier.source() == Tier.RAW) {
+            String filter = SOURCES.entrySet().stream()
+                .map(e -> "(r._measurement == \"" + e.getKey() + "\" and contains(value: r._field, set: ["
+                    + e.getValue().stream().map(f -> "\"" + f + "\"").collect(Collectors.joining(", ")) + "]))")
+                .collect(Collectors.joining(" or "));
+            flux.append("data = from(bucket: \"").append(bucket).append("\")\n")
+                .append(range)
+                .append("  |> filter(fn: (r) => ").append(filter).append(")\n")
+                .append("  |> toFloat()\n")
+                // 未采集到的性能指标以 0 写入，不参与汇总（CLS 为 0 是合法值）
+                .append("  |> filter(fn: (r) => r._measurement != \"performance\" or r._value > 0.0 or r._field == \"cls\")\n")
+                .append("out = (tables=<-, suffix) => tables\n")
+                .append("  |> map(fn: (r) => ({r with _measurement: r._measurement + \"").append(tier.getSuffix())
+                .append("\", _field: r._field + \"_\" + suffix}))\n")
+                .append("  |> to(bucket: \"").append(bucket).append("\")\n")
+                .append("data |> aggregateWindow(").append(window).append(", fn: count) |> toFloat() |> out(suffix: \"count\")\n")
+                .append("data |> aggregateWindow(").append(window).append(", fn: sum) |> out(suffix: \"sum\")\n")
+                .append("data |> aggregateWindow(").append(window).append(", fn: max) |> out(suffix: \"max\")\n")
+                .append("latency = data |> filter(fn: (r) => r._measurement == \"performance\" or r._field == \"responseTime\")\n");
+            for (String q : List.of("50", "75", "95")) {
+                flux.append("latency |> aggregateWindow(").append(window)
+                    .append(", fn: (column, tables=<-) => tables |> quantile(q: 0.").append(q)
+                    .append(", column: column, method: \"estimate_tdigest\")) |> out(suffix: \"p").append(q).append("\")\n");
+            }
+        } else {
+            String sourceSuffix = tier.source().getSuffix();
+            String measurements = SOURCES.keySet().stream()
+                .map(m -> "\"" + m + sourceSuffix + "\"")
+                .collect(Collectors.joining(", "));
+            flux.append("data = from(bucket: \"").append(bucket).append("\")\n")
+                .append(range)
+                .append("  |> filter(fn: (r) => contains(value: r._measurement, set: [").append(measurements).append("]))\n")
+                .append("out = (tables=<-) => tables\n")
+                .append("  |> map(fn: (r) => ({r with _measurement: strings.trimSuffix(v: r._measurement, suffix: \"")
+                .append(sourceSuffix).append("\") + \"").append(tier.getSuffix()).append("\"}))\n")
+                .append("  |> to(bucket: \"").append(bucket).append("\")\n")
+                .append("data |> filter(fn: (r) => strings.hasSuffix(v: r._field, suffix: \"_count\") or strings.hasSuffix(v: r._field, suffix: \"_sum\"))\n")
+                .append("  |> aggregateWindow(").append(window).append(", fn: sum) |> out()\n")
+                .append("data |> filter(fn: (r) => strings.hasSuffix(v: r._field, suffix: \"_max\"))\n")
+                .append("  |> aggregateWindow(").append(window).append(", fn: max) |> out()\n")
+                .append("data |> filter(fn: (r) => strings.hasSuffix(v: r._field, suffix: \"_p50\") or strings.hasSuffix(v: r._field, suffix: \"_p75\") or strings.hasSuffix(v: r._field, suffix: \"_p95\"))\n")
+                .append("  |> aggregateWindow(").append(window).append(", fn: mean) |> out()\n");
+        }
+        return flux.toString();
+    }
+    
+    /**
+     * 执行脚本，结果（to() 写入的数据）直接丢弃；超时时取消查询，避免 InfluxDB 端继续执行
+     */
+    private void execute(String flux) {
+        FluxQueries.stream(influxDBClient, influxDBConfig.getOrg(), flux, influxDBConfig.getQuery().getTimeout(), record -> { });
+    }
+    
+    private Long readLong(String key) {
+        Long value = cacheService.getCount(key);
+        return value != null && value > 0 ? value : null;
+    }
+    
+    private static long align(long millis, long step) {
+        return millis - Math.floorMod(millis, step);
+    }
+    
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,241 @@
+package com.monitor.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 统计缓存
+ * 缓存条目带版本号：{ version, computedAt, data }。上报只在本地标记脏模块，
+ * 定时任务每个周期最多为每个 (模块, 项目) 递增一次 Redis 中的版本号；
+ * 读取时版本过期的条目先返回旧数据，再由后台单飞重算（stale-while-revalidate）
+ */
+@Service
+@RequiredArgsConstructor
+public class StatsCache {
+    
+    public static final String MODULE_ERROR = "error";
+    public static final String MODULE_PERFORMANCE = "performance";
+    public static final String MODULE_BEHAVIOR = "behavior";
+    public static final String MODULE_API = "api";
+    public static final String MODULE_LOG = "log";
+    public static final String MODULE_DASHBOARD = "dashboard";
+    
+    private final CacheService cacheService;
+    
+    /**
+     * 最小新鲜期（秒）：计算后在该时间内即使版本变化也直接返回
+     */
+    @Value("${stats-cache.min-freshness:5}")
+    private long minFreshness;
+    
+    /**
+     * 过期数据最长保留时间（秒），超过后同步重算
+     */
+    @Value("${stats-cache.max-stale:300}")
+    private long maxStale;
+    
+    @Value("${stats-cache.refresh-threads:2}")
+    private int refreshThreads;
+    
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+    private volatile ExecutorService refreshExecutor;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong recomputes = new AtomicLong();
+    private final AtomicLong versionBumps = new AtomicLong();
+    
+    /**
+     * 标记模块数据已变化，同时使该项目的 Dashboard 失效
+     */
+    public void markDirty(String module, String projectId) {
+        dirty.add(module + ":" + projectId);
+    }
+    
+    /**
+     * 将本周期内的脏标记合并为一次版本递增
+     */
+    @Scheduled(fixedDelayString = "${stats-cache.debounce-interval:1000}")
+    public void flushDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(dirty);
+        dirty.removeAll(keys);
+        
+        Set<String> bumps = new HashSet<>(keys);
+        for (String key : keys) {
+            bumps.add(MODULE_DASHBOARD + key.substring(key.indexOf(':')));
+        }
+        for (String key : bumps) {
+            try {
+                cacheService.increment(versionKey(key));
+                versionBumps.incrementAndGet();
+            } catch (Exception e) {
+                // Redis 不可用时保留脏标记，下个周期重试
+                dirty.add(key);
+            }
+        }
+    }
+    
+    /**
+     * 读取统计数据
+     * @param ttl 正常缓存时间（秒），版本未变化时在该时间内直接返回
+     * @param loader 重算函数，抛出异常时不写入缓存
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(String module, String projectId, long ttl, Supplier<Map<String, Object>> loader) {
+        String key = module + ":" + projectId;
+        long version = currentVersion(key);
+        Map<String, Object> envelope = cacheService.get(dataKey(module, projectId), Map.class);
+        
+        if (envelope != null && envelope.get("data") instanceof Map) {
+            Map<String, Object> data = (Map<String, Object>) envelope.get("data");
+            long cachedVersion = ((Number) envelope.getOrDefault("version", -1L)).longValue();
+            long age = System.currentTimeMillis() - ((Number) envelope.getOrDefault("computedAt", 0L)).longValue();
+            
+            if (age < minFreshness * 1000 || (cachedVersion == version && age < ttl * 1000)) {
+                hits.incrementAndGet();
+                return data;
+            }
+            if (age < maxStale * 1000) {
+                staleServed.incrementAndGet();
+                refreshAsync(module, projectId, loader);
+                return data;
+            }
+        }
+        
+        misses.incrementAndGet();
+        return recompute(module, projectId, loader);
+    }
+    
+    /**
+     * 同步重算，同一键并发请求共享一次计算
+     */
+    private Map<String, Object> recompute(String module, String projectId, Supplier<Map<String, Object>> loader) {
+        String key = module + ":" + projectId;
+        CompletableFuture<Map<String, Object>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.join();
+        }
+        runLoader(module, projectId, loader, created);
+        return created.join();
+    }
+    
+    private void refreshAsync(String module, String projectId, Supplier<Map<String, Object>> loader) {
+        String key = module + ":" + projectId;
+        CompletableFuture<Map<String, Object>> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, created) != null) {
+            return;
+        }
+        try {
+            executor().execute(() -> runLoader(module, projectId, loader, created));
+        } catch (Exception e) {
+            inFlight.remove(key, created);
+        }
+    }
+    
+    private void runLoader(String module, String projectId, Supplier<Map<String, Object>> loader,
+                           CompletableFuture<Map<String, Object>> future) {
+        String key = module + ":" + projectId;
+        try {
+            // 先读取版本再计算，计算期间的新写入会在下次读取时再次触发重算
+            long version = currentVersion(key);
+            Map<String, Object> data = loader.get();
+            recomputes.incrementAndGet();
+            
+            // 部分数据源不可用的结果只返回给本次请求，不覆盖缓存中完整的旧数据
+            if (!Boolean.TRUE.equals(data.get("partial"))) {
+                Map<String, Object> envelope = new HashMap<>();
+                envelope.put("version", version);
+                envelope.put("computedAt", System.currentTimeMillis());
+                envelope.put("data", data);
+                try {
+                    cacheService.set(dataKey(module, projectId), envelope, maxStale);
+                } catch (Exception e) {
+                    System.err.println("⚠️ Stats cache write failed: " + e.getMessage());
+                }
+            }
+            future.complete(data);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+    
+    private long currentVersion(String key) {
+        try {
+            return cacheService.getCount(versionKey(key));
+        } catch (Exception e) {
+            return -1L;
+        }
+    }
+    
+    private String versionKey(String key) {
+        return "stats:version:" + key;
+    }
+    
+    private String dataKey(String module, String projectId) {
+        return MODULE_DASHBOARD.equals(module) ? "dashboard:" + projectId : module + ":stats:" + projectId;
+    }
+    
+    private ExecutorService executor() {
+        if (refreshExecutor == null) {
+            synchronized (this) {
+                if (refreshExecutor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads), r -> {
+                        Thread thread = new Thread(r, "stats-cache-refresh-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+    
+    /**
+     * 缓存指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("hits", hits.get());
+        metrics.put("staleServed", staleServed.get());
+        metrics.put("misses", misses.get());
+        metrics.put("recomputes", recomputes.get());
+        metrics.put("versionBumps", versionBumps.get());
+        metrics.put("dirty", dirty.size());
+        metrics.put("inFlight", inFlight.size());
+        return metrics;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushDirty();
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.monitor.service;
+
+import com.monitor.config.InfluxDBConfig;
+import com.monitor.util.UrlNormalizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InfluxDB 标签基数控制
+ * 每个 (项目, 标签) 只允许有限个不同取值进入标签，超出后统一写为 __other__，
+ * URL / 路径先归一化为路由模板，避免查询参数、ID 等动态片段产生新序列。
+ * 允许的取值保存在 Redis Set（tags:{projectId}:{tag}）中由所有节点共享，新取值通过原子脚本登记，
+ * 本地只保留副本：首次使用时从 Redis 加载，并定时同步其他节点登记的取值，重启后和各节点的判断一致
+ */
+@Service
+@RequiredArgsConstructor
+public class TagCardinalityGovernor {
+    
+    /**
+     * 超出上限后的取值
+     */
+    public static final String OVERFLOW = "__other__";
+    
+    /**
+     * 各节点归入 __other__ 的数据点数合计（Hash，字段为标签名）
+     */
+    private static final String OVERFLOW_KEY = "tag-overflow";
+    
+    private final InfluxDBConfig influxDBConfig;
+    private final CacheService cacheService;
+    
+    /**
+     * key：projectId|tag
+     */
+    private final ConcurrentHashMap<String, TagValues> values = new ConcurrentHashMap<>();
+    
+    /**
+     * 按标签统计被归入 __other__ 的数据点数：本节点累计值，以及尚未累加到 Redis 的增量
+     */
+    private final ConcurrentHashMap<String, LongAdder> overflowed = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> unsyncedOverflow = new ConcurrentHashMap<>();
+    
+    private final LongAdder fallbackAdmissions = new LongAdder();
+    
+    /**
+     * 本地副本：Redis 中已登记的取值，以及 Redis 是否已达上限
+     */
+    private static class TagValues {
+        final Set<String> known = ConcurrentHashMap.newKeySet();
+        volatile boolean capped;
+    }
+    
+    /**
+     * URL 类标签：归一化为路由模板后再限制取值数
+     */
+    public String url(String projectId, String tag, String url) {
+        if (url == null) {
+            return null;
+        }
+        return tag(projectId, tag, UrlNormalizer.normalize(url));
+    }
+    
+    /**
+     * 受限标签：已知取值直接返回，新取值在 Redis 中未达上限时登记，否则返回 __other__
+     */
+    public String tag(String projectId, String tag, String value) {
+        if (value == null) {
+            return null;
+        }
+        TagValues tagValues = values.computeIfAbsent(projectId + "|" + tag, k -> load(projectId, tag));
+        if (tagValues.known.contains(value)) {
+            return value;
+        }
+        if (!tagValues.capped && admit(projectId, tag, value, tagValues)) {
+            return value;
+        }
+        overflowed.computeIfAbsent(tag, k -> new LongAdder()).increment();
+        unsyncedOverflow.computeIfAbsent(tag, k -> new LongAdder()).increment();
+        return OVERFLOW;
+    }
+    
+    /**
+     * 在 Redis 中登记新取值
+     * Redis 已达上限时重新加载全部取值（包括其他节点刚登记的），之后未知取值直接归入 __other__；
+     * Redis 不可用时退回按本节点已知取值数判断
+     */
+    private boolean admit(String projectId, String tag, String value, TagValues tagValues) {
+        int limit = limit(tag);
+        try {
+            if (cacheService.addToSetIfBelow(redisKey(projectId, tag), value, limit)) {
+                tagValues.known.add(value);
+                return true;
+            }
+            tagValues.known.addAll(cacheService.getSetMembers(redisKey(projectId, tag)));
+            tagValues.capped = true;
+            return tagValues.known.contains(value);
+        } catch (Exception e) {
+            // 并发下可能略微超出上限，不影响控制效果
+            if (tagValues.known.size() < limit) {
+                tagValues.known.add(value);
+                fallbackAdmissions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * 首次使用某个 (项目, 标签) 时从 Redis 加载已登记的取值
+     */
+    private TagValues load(String projectId, String tag) {
+        TagValues tagValues = new TagValues();
+        try {
+            tagValues.known.addAll(cacheService.getSetMembers(redisKey(projectId, tag)));
+            tagValues.capped = tagValues.known.size() >= limit(tag);
+        } catch (Exception e) {
+            // Redis 不可用，由定时同步补齐
+        }
+        return tagValues;
+    }
+    
+    /**
+     * 定时同步其他节点登记的取值，并按当前配置重新判断是否已达上限；
+     * 同时把本节点归入 __other__ 的数据点数累加到 Redis，得到所有节点的合计
+     */
+    @Scheduled(fixedDelayString = "${influxdb.cardinality.sync-interval:30000}")
+    public void sync() {
+        values.forEach((key, tagValues) -> {
+            String[] parts = key.split("\\|", 2);
+            try {
+                tagValues.known.addAll(cacheService.getSetMembers(redisKey(parts[0], parts[1])));
+                tagValues.capped = tagValues.known.size() >= limit(parts[1]);
+            } catch (Exception e) {
+                // Redis 不可用，下次再试
+            }
+        });
+        unsyncedOverflow.forEach((tag, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta == 0) {
+                return;
+            }
+            try {
+                cacheService.incrementHash(OVERFLOW_KEY, tag, delta);
+            } catch (Exception e) {
+                adder.add(delta);
+            }
+        });
+    }
+    
+    /**
+     * 丢弃项目的本地副本（清除项目数据时调用，Redis 中的 Set 随项目缓存一起删除）
+     */
+    public void discard(String projectId) {
+        String prefix = projectId + "|";
+        values.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+    
+    /**
+     * 是否作为字段写入（配置为高基数的维度不进入标签）
+     */
+    public boolean isField(String tag) {
+        List<String> fields = influxDBConfig.getCardinality().getFieldDimensions();
+        return fields != null && fields.contains(tag);
+    }
+    
+    private int limit(String tag) {
+        return influxDBConfig.getCardinality().getLimits()
+            .getOrDefault(tag, influxDBConfig.getCardinality().getMaxValues());
+    }
+    
+    private String redisKey(String projectId, String tag) {
+        return "tags:" + projectId + ":" + tag;
+    }
+    
+    /**
+     * 各标签的取值数和被截断情况
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Map<String, Object>> tags = new HashMap<>();
+        values.forEach((key, tagValues) -> {
+            String[] parts = key.split("\\|", 2);
+            Map<String, Object> tag = tags.computeIfAbsent(parts[1], k -> {
+                Map<String, Object> m = new HashMap<>();
+                m.put("values", 0);
+                m.put("cappedProjects", new java.util.ArrayList<String>());
+                return m;
+            });
+            tag.put("values", (Integer) tag.get("values") + tagValues.known.size());
+            if (tagValues.capped || tagValues.known.size() >= limit(parts[1])) {
+                @SuppressWarnings("unchecked")
+                List<String> capped = (List<String>) tag.get("cappedProjects");
+                capped.add(parts[0]);
+            }
+        });
+        overflowed.forEach((tag, count) -> tags.computeIfAbsent(tag, k -> new HashMap<>()).put("overflowPoints", count.sum()));
+        try {
+            cacheService.getHash(OVERFLOW_KEY).forEach((tag, count) ->
+                tags.computeIfAbsent(String.valueOf(tag), k -> new HashMap<>()).put("clusterOverflowPoints", count));
+        } catch (Exception e) {
+            // Redis 不可用时只返回本节点统计
+        }
+        
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("maxValues", influxDBConfig.getCardinality().getMaxValues());
+        metrics.put("fieldDimensions", influxDBConfig.getCardinality().getFieldDimensions());
+        metrics.put("fallbackAdmissions", fallbackAdmissions.sum());
+        metrics.put("tags", tags);
+        return metrics;
+    }
+}
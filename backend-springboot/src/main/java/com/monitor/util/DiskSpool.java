@@ -0,0 +1,295 @@
+package com.monitor.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 基于内存映射文件的追加写暂存队列
+ * 
+ * 数据按固定大小的分段文件顺序追加，每条记录格式为 [长度 4 字节][CRC32C 4 字节][数据]，
+ * 长度为 0 表示分段内已无后续记录。读取进度保存在 checkpoint 文件中，
+ * 已全部读完的分段文件会被删除。数据保存在页缓存和磁盘中，不占用堆内存。
+ */
+public class DiskSpool {
+    
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    
+    private final Path dir;
+    private final int segmentSize;
+    private final long maxBytes;
+    
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+    private int writePos;
+    
+    // 已提交的读取位置
+    private long readSeq;
+    private int readPos;
+    // 最近一次 peek 之后的读取位置，commit 时生效
+    private long pendingSeq;
+    private int pendingPos;
+    
+    private long appended;
+    private long committed;
+    private long rejected;
+    private long corrupted;
+    
+    public DiskSpool(Path dir, int segmentSize, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        open();
+    }
+    
+    /**
+     * 打开已有分段并恢复读写位置
+     */
+    private void open() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    long seq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(seq, map(seq));
+                }
+            }
+        }
+        
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            readSeq = buffer.getLong();
+            readPos = buffer.getInt();
+        }
+        if (segments.isEmpty()) {
+            readPos = 0;
+        } else if (!segments.containsKey(readSeq)) {
+            readSeq = segments.firstKey();
+            readPos = 0;
+        }
+        pendingSeq = readSeq;
+        pendingPos = readPos;
+        
+        // 从最后一个分段中找到追加位置
+        if (!segments.isEmpty()) {
+            writeSegment = segments.lastEntry().getValue();
+            writePos = writeSegment.seq == readSeq ? readPos : 0;
+            while (true) {
+                int length = recordLength(writeSegment, writePos);
+                if (length <= 0 || !checkCrc(writeSegment, writePos, length)) {
+                    break;
+                }
+                writePos += HEADER_SIZE + length;
+            }
+        }
+    }
+    
+    private Segment map(long seq) throws IOException {
+        Path path = dir.resolve(String.format("%016d%s", seq, SEGMENT_SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < segmentSize) {
+                file.setLength(segmentSize);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(seq, path, buffer);
+        }
+    }
+    
+    /**
+     * 追加一条记录
+     * @return 超出容量上限或记录过大时返回 false
+     */
+    public synchronized boolean append(byte[] data) {
+        int required = HEADER_SIZE + data.length;
+        if (required > segmentSize) {
+            rejected++;
+            return false;
+        }
+        try {
+            if (writeSegment == null || writePos + required > segmentSize) {
+                if ((long) (segments.size() + 1) * segmentSize > maxBytes) {
+                    rejected++;
+                    return false;
+                }
+                rotate();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Spool segment rotation failed: " + e.getMessage());
+            rejected++;
+            return false;
+        }
+        
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        MappedByteBuffer buffer = writeSegment.buffer;
+        buffer.putInt(writePos + 4, (int) crc.getValue());
+        buffer.put(writePos + HEADER_SIZE, data);
+        // 最后写长度，未写完的记录在读取方看来仍是分段末尾
+        buffer.putInt(writePos, data.length);
+        writePos += required;
+        appended++;
+        return true;
+    }
+    
+    private void rotate() throws IOException {
+        if (writeSegment != null) {
+            writeSegment.buffer.force();
+        }
+        long seq = segments.isEmpty() ? Math.max(readSeq, 0) : segments.lastKey() + 1;
+        writeSegment = map(seq);
+        writePos = 0;
+        segments.put(seq, writeSegment);
+        if (segments.size() == 1) {
+            readSeq = pendingSeq = seq;
+            readPos = pendingPos = 0;
+        }
+    }
+    
+    /**
+     * 从已提交位置开始读取最多 max 条记录，不移动读取位置
+     * CRC 校验失败的记录会被跳过
+     */
+    public synchronized List<byte[]> peek(int max) {
+        List<byte[]> records = new ArrayList<>();
+        long seq = readSeq;
+        int pos = readPos;
+        while (records.size() < max) {
+            Segment segment = segments.get(seq);
+            if (segment == null) {
+                break;
+            }
+            int length = recordLength(segment, pos);
+            if (length <= 0) {
+                if (segment == writeSegment) {
+                    break;
+                }
+                // 当前分段已读完，进入下一个分段
+                Long next = segments.higherKey(seq);
+                if (next == null) {
+                    break;
+                }
+                seq = next;
+                pos = 0;
+                continue;
+            }
+            if (checkCrc(segment, pos, length)) {
+                byte[] data = new byte[length];
+                segment.buffer.get(pos + HEADER_SIZE, data);
+                records.add(data);
+            } else {
+                corrupted++;
+            }
+            pos += HEADER_SIZE + length;
+        }
+        pendingSeq = seq;
+        pendingPos = pos;
+        return records;
+    }
+    
+    /**
+     * 确认最近一次 peek 的记录已处理完成，删除已读完的分段并保存读取位置
+     */
+    public synchronized void commit(int count) {
+        readSeq = pendingSeq;
+        readPos = pendingPos;
+        committed += count;
+        
+        while (!segments.isEmpty() && segments.firstKey() < readSeq) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                System.err.println("⚠️ Failed to delete spool segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+        
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        checkpoint.putLong(readSeq).putInt(readPos);
+        try {
+            Files.write(dir.resolve(CHECKPOINT_FILE), checkpoint.array());
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to write spool checkpoint: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 将写入分段刷到磁盘
+     */
+    public synchronized void force() {
+        if (writeSegment != null) {
+            writeSegment.buffer.force();
+        }
+    }
+    
+    /**
+     * 是否有未回放的记录
+     */
+    public synchronized boolean isEmpty() {
+        if (segments.isEmpty()) {
+            return true;
+        }
+        return readSeq == writeSegment.seq && readPos >= writePos;
+    }
+    
+    private int recordLength(Segment segment, int pos) {
+        if (pos + HEADER_SIZE > segmentSize) {
+            return 0;
+        }
+        int length = segment.buffer.getInt(pos);
+        if (length < 0 || pos + HEADER_SIZE + length > segmentSize) {
+            return 0;
+        }
+        return length;
+    }
+    
+    private boolean checkCrc(Segment segment, int pos, int length) {
+        ByteBuffer slice = segment.buffer.slice(pos + HEADER_SIZE, length);
+        CRC32C crc = new CRC32C();
+        crc.update(slice);
+        return (int) crc.getValue() == segment.buffer.getInt(pos + 4);
+    }
+    
+    /**
+     * 暂存统计指标
+     */
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("segments", segments.size());
+        metrics.put("sizeBytes", (long) segments.size() * segmentSize);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("appended", appended);
+        metrics.put("replayed", committed);
+        metrics.put("pendingBytes", segments.isEmpty() ? 0L
+            : (long) (segments.size() - 1) * segmentSize - readPos + writePos);
+        metrics.put("rejected", rejected);
+        metrics.put("corrupted", corrupted);
+        return metrics;
+    }
+    
+    private static class Segment {
+        final long seq;
+        final Path path;
+        final MappedByteBuffer buffer;
+        
+        Segment(long seq, Path path, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
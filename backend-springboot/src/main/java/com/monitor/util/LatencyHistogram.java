@@ -0,0 +1,181 @@
+package com.monitor.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 固定内存的延迟直方图（HdrHistogram 式对数-线性分桶）
+ * 0 ~ 63ms 每毫秒一个桶，之后每个 2 的幂区间再均分为 32 个子桶，相对误差约 3%；
+ * 桶数固定（576 个，上限约 70 分钟），相同结构的直方图可以直接按桶相加合并。
+ * 非线程安全，由调用方加锁
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    
+    /**
+     * 可记录的最大值（毫秒），超过的按最大值记录
+     */
+    public static final long MAX_VALUE = (1L << 22) - 1;
+    
+    public static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+    
+    // 首次记录时分配
+    private int[] counts;
+    private long count;
+    private long sum;
+    private long max;
+    
+    /**
+     * 记录一个值（毫秒，负数按 0 处理）
+     */
+    public void record(long value) {
+        long v = Math.max(0, Math.min(MAX_VALUE, value));
+        if (counts == null) {
+            counts = new int[BUCKETS];
+        }
+        counts[indexOf(v)]++;
+        count++;
+        sum += v;
+        max = Math.max(max, v);
+    }
+    
+    public void merge(LatencyHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (counts == null) {
+            counts = new int[BUCKETS];
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * 百分位数（返回所在桶的中值，不超过最大值）
+     * @param q 0 ~ 1
+     */
+    public long percentile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.max(0, Math.min(1, q)) * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(max, (lowerBound(i) + upperBound(i)) / 2);
+            }
+        }
+        return max;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public long getMean() {
+        return count > 0 ? Math.round((double) sum / count) : 0;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    public void clear() {
+        if (counts != null) {
+            java.util.Arrays.fill(counts, 0);
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+    
+    static long lowerBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int j = index - LINEAR_LIMIT;
+        int shift = j / SUB_BUCKETS + 1;
+        return (long) (j % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+    
+    static long upperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        return lowerBound(index) + (1L << shift) - 1;
+    }
+    
+    /**
+     * 序列化后的字节数
+     */
+    public int serializedSize() {
+        return 8 * 3 + 4 + 6 * nonZeroBuckets();
+    }
+    
+    /**
+     * 序列化：统计值 + 非空桶（下标, 计数）
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(count);
+        buffer.putLong(sum);
+        buffer.putLong(max);
+        buffer.putInt(nonZeroBuckets());
+        if (counts != null) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    buffer.putShort((short) i);
+                    buffer.putInt(counts[i]);
+                }
+            }
+        }
+    }
+    
+    public static LatencyHistogram readFrom(ByteBuffer buffer) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.count = buffer.getLong();
+        histogram.sum = buffer.getLong();
+        histogram.max = buffer.getLong();
+        int buckets = buffer.getInt();
+        if (buckets > 0) {
+            histogram.counts = new int[BUCKETS];
+            for (int i = 0; i < buckets; i++) {
+                int index = buffer.getShort();
+                histogram.counts[index] = buffer.getInt();
+            }
+        }
+        return histogram;
+    }
+    
+    private int nonZeroBuckets() {
+        if (counts == null) {
+            return 0;
+        }
+        int n = 0;
+        for (int c : counts) {
+            if (c > 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,261 @@
+package com.monitor.util;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * 可合并的分位数草图（DDSketch 算法）
+ * 按对数分桶记录数值，任意分位数的相对误差不超过 relativeAccuracy；
+ * 相同精度的草图可以直接按桶相加合并，并可序列化为字节用于跨节点合并和 Redis 快照。
+ * 非线程安全，由调用方加锁
+ */
+public class QuantileSketch {
+    
+    private static final byte SERIAL_VERSION = 1;
+    private static final int INITIAL_BINS = 64;
+    
+    /**
+     * 小于该值的数（包括 0）计入零桶
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+    
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+    
+    // 稠密桶：counts[i] 对应对数桶下标 offset + i
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = Math.max(16, maxBins);
+    }
+    
+    /**
+     * 记录一个数值（负数按 0 处理）
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        double v = Math.max(0, value);
+        if (v < MIN_INDEXABLE) {
+            zeroCount++;
+        } else {
+            int index = (int) Math.ceil(Math.log(v) / logGamma);
+            ensureCapacity(index);
+            counts[clampIndex(index) - offset]++;
+        }
+        count++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+    
+    /**
+     * 合并另一个草图（精度必须相同）
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                int index = other.offset + i;
+                ensureCapacity(index);
+                counts[clampIndex(index) - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * 分位数估计
+     * @param q 0 ~ 1
+     * @return 数值，无数据时返回 NaN
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = Math.max(0, Math.min(1, q)) * (count - 1);
+        long cumulative = zeroCount;
+        if (cumulative > rank) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative > rank) {
+                double estimate = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+    
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+    
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+    
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    public void clear() {
+        counts = new long[0];
+        offset = 0;
+        zeroCount = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+    
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy, maxBins);
+        copy.merge(this);
+        return copy;
+    }
+    
+    /**
+     * 确保桶数组覆盖 index；超过 maxBins 时保留高位桶，低位数值合并到最低桶
+     */
+    private void ensureCapacity(int index) {
+        if (counts.length == 0) {
+            counts = new long[Math.min(INITIAL_BINS, maxBins)];
+            offset = index - counts.length / 2;
+            return;
+        }
+        int low = offset;
+        int high = offset + counts.length - 1;
+        if (index >= low && index <= high) {
+            return;
+        }
+        int requiredLow = Math.min(low, index);
+        int requiredHigh = Math.max(high, index);
+        // 在扩展方向预留余量，减少数组复制次数
+        int headroom = Math.max(INITIAL_BINS, counts.length / 2);
+        int newLow = index < low ? requiredLow - headroom : requiredLow;
+        int newHigh = index > high ? requiredHigh + headroom : requiredHigh;
+        if (newHigh - newLow + 1 > maxBins) {
+            newLow = requiredLow;
+            newHigh = requiredHigh;
+            if (newHigh - newLow + 1 > maxBins) {
+                newLow = newHigh - maxBins + 1;
+            }
+        }
+        long[] resized = new long[newHigh - newLow + 1];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                int target = Math.max(newLow, Math.min(newHigh, offset + i));
+                resized[target - newLow] += counts[i];
+            }
+        }
+        counts = resized;
+        offset = newLow;
+    }
+    
+    private int clampIndex(int index) {
+        return Math.max(offset, Math.min(offset + counts.length - 1, index));
+    }
+    
+    /**
+     * 序列化：版本、精度、最大桶数、统计值、非空桶区间
+     */
+    public byte[] toBytes() {
+        int first = 0;
+        int last = counts.length - 1;
+        while (first <= last && counts[first] == 0) {
+            first++;
+        }
+        while (last >= first && counts[last] == 0) {
+            last--;
+        }
+        int length = Math.max(0, last - first + 1);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + 8 * 5 + 4 + 4 + 8 * length);
+        buffer.put(SERIAL_VERSION);
+        buffer.putDouble(relativeAccuracy);
+        buffer.putInt(maxBins);
+        buffer.putLong(zeroCount);
+        buffer.putLong(count);
+        buffer.putDouble(sum);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(offset + first);
+        buffer.putInt(length);
+        for (int i = 0; i < length; i++) {
+            buffer.putLong(counts[first + i]);
+        }
+        return buffer.array();
+    }
+    
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != SERIAL_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch version: " + version);
+        }
+        QuantileSketch sketch = new QuantileSketch(buffer.getDouble(), buffer.getInt());
+        sketch.zeroCount = buffer.getLong();
+        sketch.count = buffer.getLong();
+        sketch.sum = buffer.getDouble();
+        sketch.min = buffer.getDouble();
+        sketch.max = buffer.getDouble();
+        sketch.offset = buffer.getInt();
+        int length = buffer.getInt();
+        sketch.counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            sketch.counts[i] = buffer.getLong();
+        }
+        return sketch;
+    }
+    
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(toBytes());
+    }
+    
+    public static QuantileSketch fromBase64(String value) {
+        return fromBytes(Base64.getDecoder().decode(value));
+    }
+    
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", bins=" + counts.length
+            + ", p50=" + quantile(0.5) + ", p95=" + quantile(0.95) + "}";
+    }
+}
@@ -0,0 +1,79 @@
+package com.monitor.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * URL 归一化工具
+ * 去掉协议、域名、查询参数和锚点，把路径中的数字、UUID、长十六进制串等动态片段替换为占位符，
+ * 使同一页面 / 接口的不同请求落到同一个统计维度
+ */
+public class UrlNormalizer {
+    
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]{16,}");
+    private static final Pattern MIXED_ID = Pattern.compile("(?=.*\\d)[A-Za-z0-9_-]{20,}");
+    
+    private static final int MAX_LENGTH = 200;
+    
+    /**
+     * 归一化 URL
+     * @param url 原始 URL，如 "https://a.com/order/123/detail?x=1"
+     * @return 路径模板，如 "/order/:id/detail"
+     */
+    public static String normalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return "/";
+        }
+        String path = url;
+        int schemeEnd = path.indexOf("://");
+        if (schemeEnd >= 0) {
+            int pathStart = path.indexOf('/', schemeEnd + 3);
+            path = pathStart >= 0 ? path.substring(pathStart) : "/";
+        }
+        // hash 路由（/#/order/1）以锚点中的路径为准
+        int hashRoute = path.indexOf("#/");
+        if (hashRoute >= 0) {
+            path = path.substring(hashRoute + 1);
+        }
+        int cut = indexOfAny(path, '?', '#');
+        if (cut >= 0) {
+            path = path.substring(0, cut);
+        }
+        if (path.isEmpty()) {
+            return "/";
+        }
+        
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = normalizeSegment(segments[i]);
+        }
+        String result = String.join("/", segments);
+        return result.length() > MAX_LENGTH ? result.substring(0, MAX_LENGTH) : result;
+    }
+    
+    private static String normalizeSegment(String segment) {
+        if (segment.isEmpty()) {
+            return segment;
+        }
+        if (NUMBER.matcher(segment).matches()) {
+            return ":id";
+        }
+        if (UUID.matcher(segment).matches()) {
+            return ":uuid";
+        }
+        if (HEX.matcher(segment).matches() || MIXED_ID.matcher(segment).matches()) {
+            return ":hash";
+        }
+        return segment;
+    }
+    
+    private static int indexOfAny(String value, char a, char b) {
+        int i = value.indexOf(a);
+        int j = value.indexOf(b);
+        if (i < 0) {
+            return j;
+        }
+        return j < 0 ? i : Math.min(i, j);
+    }
+}
@@ -51,7 +51,9 @@ export const logApi = {
     endTime?: string;
     page?: number;
     pageSize?: number;
-  }) => api.get('/log/search', { params })
+    cursor?: string;
+  }) => api.get('/log/search', { params }),
+  stats: (params?: { range?: string; limit?: number }) => api.get('/log/stats', { params })
 }
 
 export default api
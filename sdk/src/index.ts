@@ -7,6 +7,9 @@ interface MonitorConfig {
   enableBehavior?: boolean
   enableApi?: boolean
   sampleRate?: number
+  batchReport?: boolean
+  batchSize?: number
+  batchDelay?: number
 }
 
 interface ErrorData {
@@ -75,6 +78,7 @@ class Monitor {
   private queue: any[] = []
   private isSending = false
   private initialized = false
+  private flushTimer: ReturnType<typeof setTimeout> | null = null
 
   constructor(config: MonitorConfig) {
     // 验证必需参数
@@ -101,6 +105,9 @@ class Monitor {
       enableBehavior: true,
       enableApi: true,
       sampleRate: 1,
+      batchReport: false,
+      batchSize: 20,
+      batchDelay: 1000,
       ...config
     }
     
@@ -161,6 +168,11 @@ class Monitor {
     if (this.config.enableApi) {
       this.initApiMonitor()
     }
+    
+    // 批量模式下页面隐藏/卸载时立即发送剩余事件
+    if (this.config.batchReport) {
+      window.addEventListener('pagehide', () => this.flush())
+    }
   }
 
   // 错误监控
@@ -407,7 +419,8 @@ class Monitor {
       if (url.includes('/error/report') || 
           url.includes('/performance/report') || 
           url.includes('/behavior/report') || 
-          url.includes('/api/report')) {
+          url.includes('/api/report') ||
+          url.includes('/batch/report')) {
         return true
       }
     }
@@ -416,7 +429,8 @@ class Monitor {
     if (url.includes('/error/report') || 
         url.includes('/performance/report') || 
         url.includes('/behavior/report') || 
-        url.includes('/api/report')) {
+        url.includes('/api/report') ||
+        url.includes('/batch/report')) {
       return true
     }
     
@@ -594,7 +608,21 @@ class Monitor {
       return
     }
     this.queue.push({ endpoint, data })
-    this.flush()
+    
+    if (!this.config.batchReport) {
+      this.flush()
+      return
+    }
+    
+    // 批量模式：攒够 batchSize 条立即发送，否则延迟 batchDelay 毫秒合并发送
+    if (this.queue.length >= (this.config.batchSize || 20)) {
+      this.flush()
+    } else if (!this.flushTimer) {
+      this.flushTimer = setTimeout(() => {
+        this.flushTimer = null
+        this.flush()
+      }, this.config.batchDelay)
+    }
   }
 
   /**
@@ -659,6 +687,10 @@ class Monitor {
   private async flush() {
     if (this.isSending || this.queue.length === 0) return
     
+    if (this.config.batchReport) {
+      return this.flushBatch()
+    }
+    
     this.isSending = true
     
     while (this.queue.length > 0) {
@@ -690,6 +722,57 @@ class Monitor {
     this.isSending = false
   }
 
+  /**
+   * 批量上报：将队列中的事件合并为一次 /batch/report 请求
+   */
+  private async flushBatch() {
+    if (this.flushTimer) {
+      clearTimeout(this.flushTimer)
+      this.flushTimer = null
+    }
+    
+    this.isSending = true
+    
+    while (this.queue.length > 0) {
+      const items = this.queue.splice(0, this.config.batchSize || 20)
+      const events = items.map(item => ({
+        category: item.endpoint.split('/')[1],
+        data: item.data
+      }))
+      const dataStr = JSON.stringify(events)
+      const url = `${this.config.apiUrl}/batch/report`
+      
+      try {
+        let sent = false
+        if (typeof navigator !== 'undefined' && navigator.sendBeacon && dataStr.length < 65536) {
+          try {
+            sent = navigator.sendBeacon(url, new Blob([dataStr], { type: 'application/json' }))
+          } catch (e) {
+            // sendBeacon 失败，改用 fetch
+          }
+        }
+        
+        if (!sent) {
+          await fetch(url, {
+            method: 'POST',
+            headers: {
+              'Content-Type': 'application/json'
+            },
+            body: dataStr,
+            keepalive: dataStr.length < 65536
+          })
+        }
+      } catch (error) {
+        console.error('Monitor SDK: Failed to send batch', error)
+        // 失败的数据重新入队
+        this.queue.unshift(...items)
+        break
+      }
+    }
+    
+    this.isSending = false
+  }
+
   // 手动上报错误
   public captureError(error: Error, context?: any) {
     const errorData: ErrorData = {